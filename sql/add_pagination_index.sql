@@ -0,0 +1,12 @@
+-- ============================================
+-- Script para agregar el índice de paginación de tareas
+-- ============================================
+
+USE kodeotask;
+
+-- Índice para la paginación por clave (created_at, id) de GET /api/tasks:
+-- permite recorrer las tareas de la más reciente a la más antigua y
+-- detenerse tras "limit" filas sin ordenar toda la tabla
+CREATE INDEX idx_created_at_id ON tasks (created_at, id);
+
+SELECT 'Índice idx_created_at_id creado correctamente' AS mensaje;
@@ -0,0 +1,12 @@
+-- ============================================
+-- Script para agregar la columna de versión de tareas
+-- ============================================
+
+USE kodeotask;
+
+-- PATCH /api/tasks/{id} actualiza con un único UPDATE ... WHERE id = ? AND created_by = ?
+-- y, si el cliente envía la versión que leyó, AND version = ?; cada escritura la incrementa
+-- para detectar cambios concurrentes sin bloquear la fila entre lectura y escritura
+ALTER TABLE tasks ADD COLUMN version INT NOT NULL DEFAULT 0;
+
+SELECT 'Columna version agregada correctamente' AS mensaje;
@@ -0,0 +1,91 @@
+-- ============================================
+-- Script para agregar los índices de la consulta de tareas visibles
+-- ============================================
+
+USE kodeotask;
+
+-- TaskDAO.findByUserId une tres ramas (creadas, assigned_to y task_assignments);
+-- cada una se resuelve con uno de estos índices en lugar de recorrer la tabla.
+-- Los índices compuestos empiezan por la misma columna que los simples que
+-- reemplazan, así que siguen sirviendo a las claves foráneas.
+--
+-- Cada paso consulta information_schema y solo se ejecuta si hace falta, así el
+-- script se puede aplicar sobre una base creada con init.sql, con
+-- DatabaseConfig.initializeTables o con los scripts anteriores, y repetirse.
+
+-- Crear un índice si todavía no existe
+SET @sql = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'tasks'
+       AND index_name = 'idx_created_by_created_at') = 0,
+    'CREATE INDEX idx_created_by_created_at ON tasks (created_by, created_at)',
+    'SELECT ''idx_created_by_created_at ya existe'' AS mensaje');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'tasks'
+       AND index_name = 'idx_assigned_to_created_at') = 0,
+    'CREATE INDEX idx_assigned_to_created_at ON tasks (assigned_to, created_at)',
+    'SELECT ''idx_assigned_to_created_at ya existe'' AS mensaje');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'task_assignments'
+       AND index_name = 'idx_user_task') = 0,
+    'CREATE INDEX idx_user_task ON task_assignments (user_id, task_id)',
+    'SELECT ''idx_user_task ya existe'' AS mensaje');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Quitar los índices simples que quedan cubiertos, solo si existen (las bases
+-- creadas con DatabaseConfig.initializeTables no los tienen: MySQL descarta solo
+-- el índice implícito de la clave foránea al crear el compuesto)
+SET @sql = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'tasks'
+       AND index_name = 'idx_created_by') > 0,
+    'DROP INDEX idx_created_by ON tasks',
+    'SELECT ''idx_created_by no existe'' AS mensaje');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'tasks'
+       AND index_name = 'idx_assigned_to') > 0,
+    'DROP INDEX idx_assigned_to ON tasks',
+    'SELECT ''idx_assigned_to no existe'' AS mensaje');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'task_assignments'
+       AND index_name = 'idx_user_id') > 0,
+    'DROP INDEX idx_user_id ON task_assignments',
+    'SELECT ''idx_user_id no existe'' AS mensaje');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Verificar el plan: ninguna fila debe tener type=ALL sobre tasks o task_assignments
+-- (también con: java -cp ... com.kodeotask.server.TCPServer --explain-queries)
+EXPLAIN
+SELECT t.* FROM tasks t JOIN (
+    SELECT id FROM tasks WHERE created_by = 1
+    UNION
+    SELECT id FROM tasks WHERE assigned_to = 1
+    UNION
+    SELECT task_id FROM task_assignments WHERE user_id = 1
+) v ON v.id = t.id ORDER BY t.created_at DESC;
+
+SELECT 'Índices de tareas visibles creados correctamente' AS mensaje;
@@ -0,0 +1,22 @@
+-- ============================================
+-- Script para quitar el índice de paginación de tareas
+-- ============================================
+
+USE kodeotask;
+
+-- idx_created_at_id (de add_pagination_index.sql) ya no lo usa ninguna consulta:
+-- cada página de GET /api/tasks se resuelve por rama con idx_created_by_created_at,
+-- idx_assigned_to_created_at e idx_user_task (add_visible_tasks_indexes.sql), que
+-- se detienen tras "limit" filas sin recorrer las tareas de otros usuarios.
+-- Solo se quita si existe, así el script se puede repetir.
+SET @sql = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'tasks'
+       AND index_name = 'idx_created_at_id') > 0,
+    'DROP INDEX idx_created_at_id ON tasks',
+    'SELECT ''idx_created_at_id no existe'' AS mensaje');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SELECT 'Índice idx_created_at_id eliminado correctamente' AS mensaje;
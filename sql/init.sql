@@ -41,9 +41,10 @@ CREATE TABLE IF NOT EXISTS tasks (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     completed_at TIMESTAMP NULL,
+    version INT NOT NULL DEFAULT 0,
     
-    INDEX idx_created_by (created_by),
-    INDEX idx_assigned_to (assigned_to),
+    INDEX idx_created_by_created_at (created_by, created_at),
+    INDEX idx_assigned_to_created_at (assigned_to, created_at),
     INDEX idx_status (status),
     INDEX idx_due_date (due_date),
     
@@ -62,7 +63,7 @@ CREATE TABLE IF NOT EXISTS task_assignments (
     
     UNIQUE KEY unique_task_user (task_id, user_id),
     INDEX idx_task_id (task_id),
-    INDEX idx_user_id (user_id),
+    INDEX idx_user_task (user_id, task_id),
     
     FOREIGN KEY (task_id) REFERENCES tasks(id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
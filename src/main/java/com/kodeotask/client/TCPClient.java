@@ -2,6 +2,7 @@ package com.kodeotask.client;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
 // cliente tcp para enviar peticiones http al servidor
@@ -13,6 +14,11 @@ public class TCPClient {
     private String token_actual = null;
     private Long id_usuario_actual = null;
     
+    // conexion persistente (keep-alive) reutilizada entre peticiones
+    private Socket socket_persistente = null;
+    private InputStream entrada = null;
+    private OutputStream salida = null;
+    
     public static void main(String[] args) {
         String host = host_por_defecto;
         int puerto = puerto_por_defecto;
@@ -43,7 +49,7 @@ public class TCPClient {
             mostrar_menu();
             System.out.print("Selecciona una opcion: ");
             String opcion = scanner.nextLine().trim();
-        
+            
             try {
                 if (opcion.equals("1")) {
                     registrar_usuario(host, puerto, scanner);
@@ -61,6 +67,7 @@ public class TCPClient {
                     asignar_tarea(host, puerto, scanner);
                 } else if (opcion.equals("0") || opcion.equals("exit") || opcion.equals("quit")) {
                     System.out.println("\nHasta luego!");
+                    cerrar_conexion();
                     scanner.close();
                     return;
                 } else {
@@ -350,82 +357,102 @@ public class TCPClient {
         return null;
     }
     
-    // envia una peticion http al servidor
+    // envia una peticion http al servidor reutilizando la conexion persistente;
+    // si el servidor ya la cerro (timeout de inactividad) se reconecta una vez
     private String enviar_peticion(String host, int puerto, String metodo, String ruta, 
                                   String token, String cuerpo) throws IOException {
-        
-        Socket socket = null;
-        PrintWriter out = null;
-        BufferedReader in = null;
-        
+        boolean conexion_reutilizada = socket_persistente != null;
         try {
-            socket = new Socket(host, puerto);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            
-            StringBuilder peticion = new StringBuilder();
-            peticion.append(metodo).append(" ").append(ruta).append(" HTTP/1.1\r\n");
-            peticion.append("Host: ").append(host).append(":").append(puerto).append("\r\n");
-            
-            if (token != null) {
-                peticion.append("Authorization: Bearer ").append(token).append("\r\n");
+            return enviar_por_conexion(host, puerto, metodo, ruta, token, cuerpo);
+        } catch (IOException e) {
+            cerrar_conexion();
+            if (!conexion_reutilizada) {
+                throw e;
             }
-            
-            if (cuerpo != null && cuerpo.length() > 0) {
-                peticion.append("Content-Type: application/json\r\n");
-                peticion.append("Content-Length: ").append(cuerpo.getBytes().length).append("\r\n");
-            }
-            
-            peticion.append("\r\n");
-            
-            if (cuerpo != null && cuerpo.length() > 0) {
-                peticion.append(cuerpo);
-            }
-            
-            out.print(peticion.toString());
-            out.flush();
-            
-            StringBuilder respuesta = new StringBuilder();
-            String linea;
-            int longitud_contenido = 0;
-            boolean leyendo_headers = true;
-            
-            while ((linea = in.readLine()) != null) {
-                if (leyendo_headers) {
-                    if (linea.length() == 0) {
-                        leyendo_headers = false;
-                        if (longitud_contenido > 0) {
-                            char[] buffer = new char[longitud_contenido];
-                            int leidos = in.read(buffer, 0, longitud_contenido);
-                            if (leidos > 0) {
-                                respuesta.append(new String(buffer, 0, leidos));
-                            }
-                        }
-                        break;
-                    } else if (linea.toLowerCase().startsWith("content-length:")) {
-                        longitud_contenido = Integer.parseInt(linea.substring(15).trim());
-                    }
-                }
-            }
-            
-            return respuesta.toString();
-            
-        } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException e) {
-                }
+            return enviar_por_conexion(host, puerto, metodo, ruta, token, cuerpo);
+        }
+    }
+    
+    private String enviar_por_conexion(String host, int puerto, String metodo, String ruta, 
+                                      String token, String cuerpo) throws IOException {
+        if (socket_persistente == null || socket_persistente.isClosed()) {
+            socket_persistente = new Socket(host, puerto);
+            entrada = new BufferedInputStream(socket_persistente.getInputStream());
+            salida = new BufferedOutputStream(socket_persistente.getOutputStream());
+        }
+        
+        byte[] bytes_cuerpo = cuerpo != null ? cuerpo.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        
+        StringBuilder peticion = new StringBuilder();
+        peticion.append(metodo).append(" ").append(ruta).append(" HTTP/1.1\r\n");
+        peticion.append("Host: ").append(host).append(":").append(puerto).append("\r\n");
+        peticion.append("Connection: keep-alive\r\n");
+        
+        if (token != null) {
+            peticion.append("Authorization: Bearer ").append(token).append("\r\n");
+        }
+        
+        if (bytes_cuerpo.length > 0) {
+            peticion.append("Content-Type: application/json\r\n");
+            peticion.append("Content-Length: ").append(bytes_cuerpo.length).append("\r\n");
+        }
+        
+        peticion.append("\r\n");
+        
+        salida.write(peticion.toString().getBytes(StandardCharsets.UTF_8));
+        salida.write(bytes_cuerpo);
+        salida.flush();
+        
+        String linea_estado = leer_linea(entrada);
+        if (linea_estado == null) {
+            throw new EOFException("Conexion cerrada por el servidor");
+        }
+        
+        int longitud_contenido = 0;
+        boolean cerrar = false;
+        String linea;
+        while ((linea = leer_linea(entrada)) != null && linea.length() > 0) {
+            String linea_minusculas = linea.toLowerCase();
+            if (linea_minusculas.startsWith("content-length:")) {
+                longitud_contenido = Integer.parseInt(linea.substring(15).trim());
+            } else if (linea_minusculas.startsWith("connection:") && linea_minusculas.contains("close")) {
+                cerrar = true;
             }
-            if (out != null) {
-                out.close();
+        }
+        
+        byte[] bytes_respuesta = entrada.readNBytes(longitud_contenido);
+        
+        if (cerrar) {
+            cerrar_conexion();
+        }
+        
+        return new String(bytes_respuesta, StandardCharsets.UTF_8);
+    }
+    
+    // lee una linea de la respuesta terminada en \r\n
+    private String leer_linea(InputStream in) throws IOException {
+        ByteArrayOutputStream linea = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                String texto = linea.toString(StandardCharsets.ISO_8859_1);
+                return texto.endsWith("\r") ? texto.substring(0, texto.length() - 1) : texto;
             }
-            if (socket != null) {
-                try {
-                    socket.close();
-                } catch (IOException e) {
-                }
+            linea.write(b);
+        }
+        return linea.size() > 0 ? linea.toString(StandardCharsets.ISO_8859_1) : null;
+    }
+    
+    // cierra la conexion persistente con el servidor
+    private void cerrar_conexion() {
+        if (socket_persistente != null) {
+            try {
+                socket_persistente.close();
+            } catch (IOException e) {
             }
         }
+        socket_persistente = null;
+        entrada = null;
+        salida = null;
     }
 }
@@ -0,0 +1,339 @@
+package com.kodeotask.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * pool acotado de conexiones JDBC
+ *
+ * las conexiones se entregan envueltas en un proxy cuyo close() las devuelve
+ * al pool en lugar de cerrarlas. un semáforo limita el total de conexiones
+ * prestadas, las conexiones libres se validan al prestarse y un hilo de
+ * mantenimiento cierra las que llevan demasiado tiempo sin usarse y repone
+ * las libres hasta minIdle (también tras fallos de validación o un reinicio
+ * de la base de datos).
+ */
+public class ConnectionPool {
+    
+    /**
+     * fábrica de conexiones físicas
+     */
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+    
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledEntry> idle = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+    
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    
+    private static class PooledEntry {
+        final Connection physical;
+        volatile long lastUsed;
+        
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+    
+    public ConnectionPool(ConnectionFactory factory, int maxSize, int minIdle,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, int validationTimeoutSeconds) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize debe ser mayor que 0");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+        
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::maintain, 0, period, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * obtiene una conexión del pool, esperando como máximo borrowTimeoutMillis
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+        
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Pool de conexiones agotado: no hay conexión disponible tras "
+                    + borrowTimeoutMillis + " ms (max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión del pool");
+        }
+        totalWaitNanos.addAndGet(System.nanoTime() - start);
+        
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (isValid(entry)) {
+                    borrowCount.incrementAndGet();
+                    return wrap(entry);
+                }
+                validationFailures.incrementAndGet();
+                destroy(entry);
+            }
+            
+            entry = new PooledEntry(factory.create());
+            totalConnections.incrementAndGet();
+            createdCount.incrementAndGet();
+            borrowCount.incrementAndGet();
+            return wrap(entry);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * devuelve una conexión al pool
+     */
+    private void release(PooledEntry entry, boolean broken) {
+        try {
+            if (broken || closed) {
+                destroy(entry);
+                return;
+            }
+            
+            try {
+                if (!entry.physical.getAutoCommit()) {
+                    entry.physical.rollback();
+                    entry.physical.setAutoCommit(true);
+                }
+                if (entry.physical.isReadOnly()) {
+                    entry.physical.setReadOnly(false);
+                }
+                entry.physical.clearWarnings();
+            } catch (SQLException e) {
+                destroy(entry);
+                return;
+            }
+            
+            entry.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(entry);
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private boolean isValid(PooledEntry entry) {
+        try {
+            return !entry.physical.isClosed() && entry.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    private void destroy(PooledEntry entry) {
+        totalConnections.decrementAndGet();
+        destroyedCount.incrementAndGet();
+        try {
+            entry.physical.close();
+        } catch (SQLException e) {
+            System.err.println("[DB POOL] Error al cerrar conexión: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * tarea del hilo de mantenimiento: primero desaloja y luego repone
+     */
+    private void maintain() {
+        evictIdle();
+        fillIdle();
+    }
+    
+    /**
+     * cierra las conexiones libres que superan el tiempo de inactividad,
+     * conservando al menos minIdle
+     */
+    private void evictIdle() {
+        long limit = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<PooledEntry> it = idle.descendingIterator();
+        while (it.hasNext() && idle.size() > minIdle) {
+            PooledEntry entry = it.next();
+            if (entry.lastUsed < limit && idle.removeFirstOccurrence(entry)) {
+                destroy(entry);
+            }
+        }
+    }
+    
+    /**
+     * abre conexiones libres hasta tener minIdle, sin pasar de maxSize en total; si la base
+     * de datos no responde lo deja para la siguiente ejecución
+     */
+    private void fillIdle() {
+        while (!closed && idle.size() < minIdle) {
+            if (totalConnections.incrementAndGet() > maxSize) {
+                totalConnections.decrementAndGet();
+                return;
+            }
+            PooledEntry entry;
+            try {
+                entry = new PooledEntry(factory.create());
+            } catch (SQLException | RuntimeException e) {
+                totalConnections.decrementAndGet();
+                System.err.println("[DB POOL] No se pudo reponer una conexión libre: " + e.getMessage());
+                return;
+            }
+            createdCount.incrementAndGet();
+            idle.offerLast(entry);
+            // shutdown() pudo vaciar la lista justo antes de agregarla
+            if (closed && idle.removeFirstOccurrence(entry)) {
+                destroy(entry);
+            }
+        }
+    }
+    
+    private Connection wrap(PooledEntry entry) {
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            new PooledConnectionHandler(entry)
+        );
+    }
+    
+    /**
+     * intercepta close() e isClosed() de la conexión prestada
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        // el hilo que la tomó y el que la cierra pueden ser distintos; compareAndSet evita
+        // devolverla dos veces si dos hilos llaman a close() a la vez
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private volatile boolean broken = false;
+        
+        PooledConnectionHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            
+            if (name.equals("close")) {
+                if (returned.compareAndSet(false, true)) {
+                    release(entry, broken);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return returned.get() || entry.physical.isClosed();
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("toString")) {
+                return "PooledConnection[" + entry.physical + "]";
+            }
+            if (returned.get()) {
+                throw new SQLException("La conexión ya fue devuelta al pool");
+            }
+            
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isFatal((SQLException) cause)) {
+                    broken = true;
+                }
+                throw cause;
+            }
+        }
+        
+        private boolean isFatal(SQLException e) {
+            String state = e.getSQLState();
+            return state != null && state.startsWith("08");
+        }
+    }
+    
+    /**
+     * cierra el pool y todas las conexiones libres
+     */
+    public void shutdown() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+    }
+    
+    public int getMaxSize() { return maxSize; }
+    public int getTotalConnections() { return totalConnections.get(); }
+    public int getIdleConnections() { return idle.size(); }
+    public int getActiveConnections() { return maxSize - permits.availablePermits(); }
+    public int getWaitingThreads() { return permits.getQueueLength(); }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getDestroyedCount() { return destroyedCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getValidationFailures() { return validationFailures.get(); }
+    
+    /**
+     * tiempo medio de espera para obtener una conexión, en milisegundos
+     */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+            "ConnectionPool{activas=%d, libres=%d, total=%d, max=%d, esperando=%d, prestamos=%d, " +
+            "creadas=%d, destruidas=%d, timeouts=%d, invalidas=%d, esperaMedia=%.2fms}",
+            getActiveConnections(), getIdleConnections(), getTotalConnections(), maxSize,
+            getWaitingThreads(), getBorrowCount(), getCreatedCount(), getDestroyedCount(),
+            getTimeoutCount(), getValidationFailures(), getAverageWaitMillis()
+        );
+    }
+}
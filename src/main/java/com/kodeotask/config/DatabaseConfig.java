@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * configuración de conexión a MySQL usando JDBC puro
@@ -16,30 +17,57 @@ public class DatabaseConfig {
     private static final String USER = "root";
     private static final String PASSWORD = "password";
     
+    // rewriteBatchedStatements: el driver envía cada batch de INSERT como un único INSERT
+    // multi-fila y agrupa los UPDATE/DELETE en pocos viajes en lugar de uno por sentencia
     private static final String URL = String.format(
-        "jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true",
+        "jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true",
         HOST, PORT, DATABASE
     );
     
-    private static Connection connection = null;
+    private static final int POOL_MAX_SIZE = Integer.getInteger("kodeotask.db.pool.max", 20);
+    private static final int POOL_MIN_IDLE = Integer.getInteger("kodeotask.db.pool.minIdle", 2);
+    private static final long POOL_BORROW_TIMEOUT_MS = Long.getLong("kodeotask.db.pool.timeoutMs", 5000L);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("kodeotask.db.pool.idleMs", 300000L);
+    private static final int POOL_VALIDATION_TIMEOUT_S = 2;
+    
+    private static volatile ConnectionPool pool = null;
+    
+    // ReentrantLock en lugar de synchronized para no fijar el carrier de un virtual thread
+    private static final ReentrantLock poolLock = new ReentrantLock();
     
     /**
-     * obtiene una conexión a la base de datos
+     * obtiene el pool de conexiones, creándolo la primera vez
      */
-    public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            poolLock.lock();
             try {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-            } catch (ClassNotFoundException e) {
-                throw new SQLException("Driver MySQL no encontrado: " + e.getMessage());
+                current = pool;
+                if (current == null) {
+                    current = new ConnectionPool(
+                        DatabaseConfig::createNewConnection,
+                        POOL_MAX_SIZE, POOL_MIN_IDLE,
+                        POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_VALIDATION_TIMEOUT_S
+                    );
+                    pool = current;
+                }
+            } finally {
+                poolLock.unlock();
             }
         }
-        return connection;
+        return current;
+    }
+    
+    /**
+     * obtiene una conexión del pool; close() la devuelve al pool
+     */
+    public static Connection getConnection() throws SQLException {
+        return getPool().borrow();
     }
     
     /**
-     * crea una nueva conexión para uso en threads separados
+     * crea una nueva conexión física, sin pasar por el pool
      */
     public static Connection createNewConnection() throws SQLException {
         try {
@@ -51,66 +79,88 @@ public class DatabaseConfig {
     }
     
     /**
-     * cierra la conexión principal
+     * cierra el pool de conexiones
      */
     public static void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                System.err.println("Error al cerrar conexión: " + e.getMessage());
+        poolLock.lock();
+        try {
+            ConnectionPool current = pool;
+            if (current != null) {
+                System.out.println("[DB POOL] " + current);
+                current.shutdown();
+                pool = null;
             }
+        } finally {
+            poolLock.unlock();
         }
     }
     
     /**
-     * inicializa las tablas de la base de datos
+     * inicializa las tablas de la base de datos, con los mismos índices que sql/init.sql
      */
     public static void initializeTables() throws SQLException {
-        Connection conn = getConnection();
-        Statement stmt = conn.createStatement();
-        String createUsersTable = """
-            CREATE TABLE IF NOT EXISTS users (
-                id BIGINT AUTO_INCREMENT PRIMARY KEY,
-                username VARCHAR(50) NOT NULL UNIQUE,
-                email VARCHAR(100) NOT NULL UNIQUE,
-                password VARCHAR(255) NOT NULL,
-                first_name VARCHAR(50),
-                last_name VARCHAR(50),
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
-            )
-            """;
-        stmt.executeUpdate(createUsersTable);
-        
-        String createTasksTable = """
-            CREATE TABLE IF NOT EXISTS tasks (
-                id BIGINT AUTO_INCREMENT PRIMARY KEY,
-                title VARCHAR(200) NOT NULL,
-                description TEXT,
-                status ENUM('PENDING', 'IN_PROGRESS', 'COMPLETED') DEFAULT 'PENDING',
-                category VARCHAR(50),
-                created_by BIGINT NOT NULL,
-                assigned_to BIGINT,
-                due_date DATETIME,
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-                completed_at TIMESTAMP NULL,
-                FOREIGN KEY (created_by) REFERENCES users(id) ON DELETE CASCADE,
-                FOREIGN KEY (assigned_to) REFERENCES users(id) ON DELETE SET NULL
-            )
-            """;
-        stmt.executeUpdate(createTasksTable);
-        
-        stmt.close();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            String createUsersTable = """
+                CREATE TABLE IF NOT EXISTS users (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    username VARCHAR(50) NOT NULL UNIQUE,
+                    email VARCHAR(100) NOT NULL UNIQUE,
+                    password VARCHAR(255) NOT NULL,
+                    first_name VARCHAR(50),
+                    last_name VARCHAR(50),
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+                )
+                """;
+            stmt.executeUpdate(createUsersTable);
+            
+            String createTasksTable = """
+                CREATE TABLE IF NOT EXISTS tasks (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    title VARCHAR(200) NOT NULL,
+                    description TEXT,
+                    status ENUM('PENDING', 'IN_PROGRESS', 'COMPLETED') DEFAULT 'PENDING',
+                    category VARCHAR(50),
+                    created_by BIGINT NOT NULL,
+                    assigned_to BIGINT,
+                    due_date DATETIME,
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+                    completed_at TIMESTAMP NULL,
+                    version INT NOT NULL DEFAULT 0,
+                    INDEX idx_created_by_created_at (created_by, created_at),
+                    INDEX idx_assigned_to_created_at (assigned_to, created_at),
+                    INDEX idx_status (status),
+                    INDEX idx_due_date (due_date),
+                    FOREIGN KEY (created_by) REFERENCES users(id) ON DELETE CASCADE,
+                    FOREIGN KEY (assigned_to) REFERENCES users(id) ON DELETE SET NULL
+                )
+                """;
+            stmt.executeUpdate(createTasksTable);
+            
+            String createTaskAssignmentsTable = """
+                CREATE TABLE IF NOT EXISTS task_assignments (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    task_id BIGINT NOT NULL,
+                    user_id BIGINT NOT NULL,
+                    assigned_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    UNIQUE KEY unique_task_user (task_id, user_id),
+                    INDEX idx_task_id (task_id),
+                    INDEX idx_user_task (user_id, task_id),
+                    FOREIGN KEY (task_id) REFERENCES tasks(id) ON DELETE CASCADE,
+                    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+                )
+                """;
+            stmt.executeUpdate(createTaskAssignmentsTable);
+        }
     }
     
     /**
      * verifica la conexión a la base de datos
      */
     public static boolean testConnection() {
-        try {
-            Connection conn = getConnection();
+        try (Connection conn = getConnection()) {
             return conn != null && !conn.isClosed();
         } catch (SQLException e) {
             System.err.println("Error de conexión: " + e.getMessage());
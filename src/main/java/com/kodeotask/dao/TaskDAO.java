@@ -2,169 +2,269 @@ package com.kodeotask.dao;
 
 import com.kodeotask.config.DatabaseConfig;
 import com.kodeotask.model.Task;
+import com.kodeotask.model.TaskBulkOperation;
+import com.kodeotask.model.TaskImportProgress;
+import com.kodeotask.model.TaskImportRecord;
+import com.kodeotask.model.TaskPatch;
+import com.kodeotask.model.TaskPatchResult;
+import com.kodeotask.model.TaskQuery;
 import com.kodeotask.model.TaskStatus;
 
+import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * data access object para tareas usando JDBC
  */
 public class TaskDAO {
     
+    private static final String INSERT_SQL = """
+        INSERT INTO tasks (title, description, status, category, created_by, assigned_to, due_date)
+        VALUES (?, ?, ?, ?, ?, ?, ?)
+        """;
+    
     /**
-     * crea una nueva tarea
+     * crea una nueva tarea con sus asignaciones en una sola transacción y la devuelve con los
+     * nombres del creador y de los asignados
      */
     public Task create(Task task) throws SQLException {
-        String sql = """
-            INSERT INTO tasks (title, description, status, category, created_by, assigned_to, due_date)
-            VALUES (?, ?, ?, ?, ?, ?, ?)
-            """;
-        
-        try (Connection conn = DatabaseConfig.createNewConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            stmt.setString(1, task.getTitle());
-            stmt.setString(2, task.getDescription());
-            stmt.setString(3, task.getStatus() != null ? task.getStatus().name() : "PENDING");
-            stmt.setString(4, task.getCategory());
-            stmt.setLong(5, task.getCreatedBy());
-            
-            if (task.getAssignedTo() != null) {
-                stmt.setLong(6, task.getAssignedTo());
-            } else {
-                stmt.setNull(6, Types.BIGINT);
-            }
-            
-            if (task.getDueDate() != null) {
-                stmt.setTimestamp(7, Timestamp.valueOf(task.getDueDate()));
-            } else {
-                stmt.setNull(7, Types.TIMESTAMP);
-            }
-            
-            int affectedRows = stmt.executeUpdate();
-            
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        task.setId(generatedKeys.getLong(1));
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                    bindInsert(stmt, task);
+                    
+                    int affectedRows = stmt.executeUpdate();
+                    
+                    if (affectedRows > 0) {
+                        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                            if (generatedKeys.next()) {
+                                task.setId(generatedKeys.getLong(1));
+                            }
+                        }
                     }
                 }
+                
+                if (task.getAssignedUsers() != null && !task.getAssignedUsers().isEmpty()) {
+                    Map<Long, Collection<Long>> assignments = new HashMap<>();
+                    assignments.put(task.getId(), new LinkedHashSet<>(task.getAssignedUsers()));
+                    insertAssignments(conn, assignments);
+                }
+                loadUserNames(conn, List.of(task));
+                
+                conn.commit();
+                return task;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
             }
-            
-            if (task.getAssignedUsers() != null && !task.getAssignedUsers().isEmpty()) {
-                saveAssignedUsers(task.getId(), task.getAssignedUsers());
-            }
-            
-            return task;
+        }
+    }
+    
+    private static void bindInsert(PreparedStatement stmt, Task task) throws SQLException {
+        stmt.setString(1, task.getTitle());
+        stmt.setString(2, task.getDescription());
+        stmt.setString(3, task.getStatus() != null ? task.getStatus().name() : "PENDING");
+        stmt.setString(4, task.getCategory());
+        stmt.setLong(5, task.getCreatedBy());
+        
+        if (task.getAssignedTo() != null) {
+            stmt.setLong(6, task.getAssignedTo());
+        } else {
+            stmt.setNull(6, Types.BIGINT);
+        }
+        
+        if (task.getDueDate() != null) {
+            stmt.setTimestamp(7, Timestamp.valueOf(task.getDueDate()));
+        } else {
+            stmt.setNull(7, Types.TIMESTAMP);
         }
     }
     
     /**
-     * guarda los usuarios asignados a una tarea
+     * sincroniza las asignaciones de varias tareas (id de tarea -> usuarios) dentro de la
+     * transacción de conn: solo borra las que sobran e inserta las que faltan, sin reescribir
+     * las que no cambian. lee y bloquea las actuales con una consulta por lote de ids
      */
-    private void saveAssignedUsers(Long taskId, List<Long> userIds) throws SQLException {
-        String deleteSql = "DELETE FROM task_assignments WHERE task_id = ?";
-        try (Connection conn = DatabaseConfig.createNewConnection();
-             PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-            deleteStmt.setLong(1, taskId);
-            deleteStmt.executeUpdate();
+    private void syncAssignedUsers(Connection conn, Map<Long, List<Long>> wantedByTask) throws SQLException {
+        if (wantedByTask.isEmpty()) {
+            return;
         }
         
-        if (userIds != null && !userIds.isEmpty()) {
-            String insertSql = "INSERT INTO task_assignments (task_id, user_id) VALUES (?, ?)";
-            try (Connection conn = DatabaseConfig.createNewConnection();
-                 PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                for (Long userId : userIds) {
-                    insertStmt.setLong(1, taskId);
+        Map<Long, Set<Long>> current = new HashMap<>();
+        List<Long> taskIds = new ArrayList<>(wantedByTask.keySet());
+        for (int from = 0; from < taskIds.size(); from += IN_BATCH_SIZE) {
+            List<Long> batch = taskIds.subList(from, Math.min(from + IN_BATCH_SIZE, taskIds.size()));
+            String selectSql = "SELECT task_id, user_id FROM task_assignments WHERE task_id IN (%s) FOR UPDATE"
+                .formatted(placeholders(batch.size()));
+            try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                bindIds(stmt, batch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        current.computeIfAbsent(rs.getLong(1), k -> new LinkedHashSet<>()).add(rs.getLong(2));
+                    }
+                }
+            }
+        }
+        
+        Map<Long, Collection<Long>> toDelete = new HashMap<>();
+        Map<Long, Collection<Long>> toInsert = new LinkedHashMap<>();
+        for (Map.Entry<Long, List<Long>> entry : wantedByTask.entrySet()) {
+            Set<Long> existing = current.getOrDefault(entry.getKey(), Set.of());
+            Set<Long> wanted = new LinkedHashSet<>(entry.getValue());
+            for (Long userId : existing) {
+                if (!wanted.contains(userId)) {
+                    toDelete.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(userId);
+                }
+            }
+            for (Long userId : wanted) {
+                if (!existing.contains(userId)) {
+                    toInsert.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(userId);
+                }
+            }
+        }
+        
+        if (!toDelete.isEmpty()) {
+            String deleteSql = "DELETE FROM task_assignments WHERE task_id = ? AND user_id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+                for (Map.Entry<Long, Collection<Long>> entry : toDelete.entrySet()) {
+                    for (Long userId : entry.getValue()) {
+                        stmt.setLong(1, entry.getKey());
+                        stmt.setLong(2, userId);
+                        stmt.addBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+        }
+        
+        insertAssignments(conn, toInsert);
+    }
+    
+    private void insertAssignments(Connection conn, Map<Long, Collection<Long>> userIdsByTask) throws SQLException {
+        if (userIdsByTask.isEmpty()) {
+            return;
+        }
+        String insertSql = "INSERT INTO task_assignments (task_id, user_id) VALUES (?, ?)";
+        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+            for (Map.Entry<Long, Collection<Long>> entry : userIdsByTask.entrySet()) {
+                for (Long userId : entry.getValue()) {
+                    insertStmt.setLong(1, entry.getKey());
                     insertStmt.setLong(2, userId);
                     insertStmt.addBatch();
                 }
-                insertStmt.executeBatch();
             }
+            insertStmt.executeBatch();
         }
     }
     
     /**
-     * carga los usuarios asignados a una tarea
+     * número máximo de parámetros por cada consulta IN
+     */
+    private static final int IN_BATCH_SIZE = 500;
+    
+    /**
+     * directorio compartido de usernames y nombres visibles
+     */
+    private final UserDirectory userDirectory = UserDirectory.getInstance();
+    
+    /**
+     * carga asignaciones, nombres de asignados y username del creador para
+     * todas las tareas con una consulta por lote de asignaciones; los nombres salen de
+     * userDirectory, que solo consulta la tabla users para los usuarios que aún no conoce
      */
-    private List<Long> loadAssignedUsers(Long taskId) throws SQLException {
-        String sql = "SELECT user_id FROM task_assignments WHERE task_id = ?";
-        List<Long> userIds = new ArrayList<>();
+    private void loadRelations(Connection conn, List<Task> tasks) throws SQLException {
+        if (tasks.isEmpty()) {
+            return;
+        }
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setLong(1, taskId);
+        Map<Long, Task> tasksById = new LinkedHashMap<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (Task task : tasks) {
+            tasksById.put(task.getId(), task);
+            task.setAssignedUsers(new ArrayList<>());
+            task.setAssignedUsersNames(new ArrayList<>());
+            userIds.add(task.getCreatedBy());
+        }
+        
+        List<Long> taskIds = new ArrayList<>(tasksById.keySet());
+        for (int from = 0; from < taskIds.size(); from += IN_BATCH_SIZE) {
+            List<Long> batch = taskIds.subList(from, Math.min(from + IN_BATCH_SIZE, taskIds.size()));
+            String sql = "SELECT task_id, user_id FROM task_assignments WHERE task_id IN (%s) ORDER BY task_id, id"
+                .formatted(placeholders(batch.size()));
             
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    userIds.add(rs.getLong("user_id"));
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                bindIds(stmt, batch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Long userId = rs.getLong("user_id");
+                        tasksById.get(rs.getLong("task_id")).getAssignedUsers().add(userId);
+                        userIds.add(userId);
+                    }
                 }
             }
         }
         
-        return userIds;
+        loadUserNames(conn, tasks);
     }
     
     /**
-     * carga los nombres de usuarios asignados a una tarea
+     * completa el username del creador y los nombres visibles de los asignados de tareas que ya
+     * traen sus asignaciones; los nombres salen de userDirectory, que lee con conn (y en su
+     * transacción) solo los usuarios que aún no conoce
      */
-    private List<String> loadAssignedUsersNames(Long taskId) throws SQLException {
-        String sql = """
-            SELECT u.username, u.first_name, u.last_name 
-            FROM task_assignments ta
-            JOIN users u ON ta.user_id = u.id
-            WHERE ta.task_id = ?
-            ORDER BY u.username
-            """;
-        List<String> userNames = new ArrayList<>();
-        
-        try (Connection conn = DatabaseConfig.createNewConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setLong(1, taskId);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    String firstName = rs.getString("first_name");
-                    String lastName = rs.getString("last_name");
-                    String username = rs.getString("username");
-                    
-                    String displayName;
-                    if (firstName != null && lastName != null && !firstName.isEmpty() && !lastName.isEmpty()) {
-                        displayName = firstName + " " + lastName + " (" + username + ")";
-                    } else if (firstName != null && !firstName.isEmpty()) {
-                        displayName = firstName + " (" + username + ")";
-                    } else {
-                        displayName = username;
-                    }
-                    userNames.add(displayName);
-                }
-            }
+    private void loadUserNames(Connection conn, List<Task> tasks) throws SQLException {
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (Task task : tasks) {
+            userIds.add(task.getCreatedBy());
+            userIds.addAll(task.getAssignedUsers());
         }
         
-        return userNames;
+        Map<Long, UserDirectory.Entry> users = userDirectory.resolve(conn, userIds);
+        for (Task task : tasks) {
+            UserDirectory.Entry creator = users.get(task.getCreatedBy());
+            task.setCreatedByUsername(creator != null ? creator.getUsername() : null);
+            task.setAssignedUsersNames(UserDirectory.displayNames(task.getAssignedUsers(), users));
+        }
     }
     
     /**
-     * Obtiene el username del creador de una tarea
+     * nombres visibles ({username, nombre visible}) ordenados por username sin distinguir mayúsculas
      */
-    private String loadCreatorUsername(Long createdBy) throws SQLException {
-        String sql = "SELECT username FROM users WHERE id = ?";
-        
-        try (Connection conn = DatabaseConfig.createNewConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setLong(1, createdBy);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString("username");
-                }
-            }
+    private static List<String> sortedDisplayNames(List<String[]> names) {
+        names.sort((x, y) -> String.CASE_INSENSITIVE_ORDER.compare(x[0], y[0]));
+        List<String> displayNames = new ArrayList<>(names.size());
+        for (String[] name : names) {
+            displayNames.add(name[1]);
+        }
+        return displayNames;
+    }
+    
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+    
+    private static void bindIds(PreparedStatement stmt, List<Long> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            stmt.setLong(i + 1, ids.get(i));
         }
-        
-        return null;
     }
     
     /**
@@ -173,39 +273,74 @@ public class TaskDAO {
     public Optional<Task> findById(Long id) throws SQLException {
         String sql = "SELECT * FROM tasks WHERE id = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, id);
             
+            Task task = null;
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Task task = mapResultSetToTask(rs);
-                    task.setAssignedUsers(loadAssignedUsers(id));
-                    task.setAssignedUsersNames(loadAssignedUsersNames(id));
-                    task.setCreatedByUsername(loadCreatorUsername(task.getCreatedBy()));
-                    return Optional.of(task);
+                    task = mapResultSetToTask(rs);
                 }
             }
+            
+            if (task != null) {
+                loadRelations(conn, List.of(task));
+                return Optional.of(task);
+            }
         }
         
         return Optional.empty();
     }
     
+    /**
+     * busca varias tareas por id con sus relaciones; las que no existen no aparecen en el resultado
+     */
+    public Map<Long, Task> findByIds(Collection<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return findByIds(conn, new ArrayList<>(ids));
+        }
+    }
+    
+    /**
+     * ids de las tareas visibles para un usuario: creadas por él, asignadas con assigned_to
+     * o asignadas en task_assignments. cada rama de la UNION se resuelve solo con su índice
+     * (idx_created_by_created_at, idx_assigned_to_created_at, idx_user_task) en lugar de
+     * combinar las tres condiciones con OR sobre un LEFT JOIN, que obliga a recorrer la tabla
+     * y deduplicar filas completas; aquí solo se deduplican ids.
+     */
+    private static final String VISIBLE_TASK_IDS_SQL = """
+        SELECT id FROM tasks WHERE created_by = ?
+        UNION
+        SELECT id FROM tasks WHERE assigned_to = ?
+        UNION
+        SELECT task_id FROM task_assignments WHERE user_id = ?
+        """;
+    
+    /**
+     * ramas de la UNION de appendUserQuery, con la tabla tasks de cada rama como alias b: las
+     * tres de VISIBLE_TASK_IDS_SQL y, con el filtro assignedToMe, solo las dos de asignación
+     */
+    private static final String CREATED_BRANCH = "SELECT b.id FROM tasks b WHERE b.created_by = ?";
+    private static final String ASSIGNED_TO_BRANCH = "SELECT b.id FROM tasks b WHERE b.assigned_to = ?";
+    private static final String ASSIGNMENTS_BRANCH =
+        "SELECT b.id FROM task_assignments a JOIN tasks b ON b.id = a.task_id WHERE a.user_id = ?";
+    
+    private static final String FIND_BY_USER_ID_SQL =
+        "SELECT t.* FROM tasks t JOIN (" + VISIBLE_TASK_IDS_SQL + ") v ON v.id = t.id ORDER BY t.created_at DESC";
+    
     /**
      * obtiene todas las tareas de un usuario
      */
     public List<Task> findByUserId(Long userId) throws SQLException {
-        String sql = """
-            SELECT DISTINCT t.* FROM tasks t
-            LEFT JOIN task_assignments ta ON t.id = ta.task_id
-            WHERE t.created_by = ? OR t.assigned_to = ? OR ta.user_id = ?
-            ORDER BY t.created_at DESC
-            """;
         List<Task> tasks = new ArrayList<>();
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(FIND_BY_USER_ID_SQL)) {
             
             stmt.setLong(1, userId);
             stmt.setLong(2, userId);
@@ -213,18 +348,272 @@ public class TaskDAO {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Task task = mapResultSetToTask(rs);
-                    task.setAssignedUsers(loadAssignedUsers(task.getId()));
-                    task.setAssignedUsersNames(loadAssignedUsersNames(task.getId()));
-                    task.setCreatedByUsername(loadCreatorUsername(task.getCreatedBy()));
-                    tasks.add(task);
+                    tasks.add(mapResultSetToTask(rs));
                 }
             }
+            
+            loadRelations(conn, tasks);
         }
         
         return tasks;
     }
     
+    /**
+     * devuelve el plan (EXPLAIN) de la consulta de findByUserId y de dos páginas de
+     * findByUserQuery (sin filtros y con estado y fecha límite), una línea por tabla accedida
+     * precedida del nombre de la consulta, y marca con "AVISO" las que recorren la tabla
+     * completa (type=ALL)
+     */
+    public List<String> explainFindByUserId(Long userId) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        
+        TaskQuery page = new TaskQuery();
+        page.setLimit(50);
+        
+        TaskQuery filtered = new TaskQuery();
+        filtered.setStatus(TaskStatus.PENDING);
+        filtered.setDueBefore(LocalDateTime.now().plusDays(7));
+        filtered.setLimit(50);
+        
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            plan.add("findByUserId:");
+            explain(conn, FIND_BY_USER_ID_SQL, List.of(userId, userId, userId), plan);
+            plan.add("findByUserQuery (limit " + page.getLimit() + "):");
+            explainUserQuery(conn, userId, page, plan);
+            plan.add("findByUserQuery (status=PENDING, dueBefore, limit " + filtered.getLimit() + "):");
+            explainUserQuery(conn, userId, filtered, plan);
+        }
+        
+        return plan;
+    }
+    
+    private static void explainUserQuery(Connection conn, Long userId, TaskQuery query, List<String> plan) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT t.* FROM tasks t");
+        List<Object> params = new ArrayList<>();
+        appendUserQuery(sql, params, userId, query);
+        explain(conn, sql.toString(), params, plan);
+    }
+    
+    private static void explain(Connection conn, String sql, List<Object> params, List<String> plan) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString("table");
+                    String type = rs.getString("type");
+                    String line = String.format("%-12s %-14s type=%-7s key=%-28s rows=%-6s %s",
+                        rs.getString("select_type"), table, type, rs.getString("key"),
+                        rs.getString("rows"), rs.getString("Extra") != null ? rs.getString("Extra") : "");
+                    // las tablas derivadas/union (<derived2>, <union2,3,4>) son temporales pequeñas
+                    if ("ALL".equals(type) && table != null && !table.startsWith("<")) {
+                        line = "AVISO " + line;
+                    }
+                    plan.add(line);
+                }
+            }
+        }
+    }
+    
+    /**
+     * agrega a sql (que termina en la cláusula FROM, con la tabla tasks como alias t) la
+     * visibilidad, los filtros, la posición de página, el orden y el límite de la consulta.
+     * la visibilidad es un JOIN con una UNION de ids como la de findByUserId, pero filtros y
+     * clave de página se repiten dentro de cada rama: así cada una puede elegir el índice del
+     * filtro (idx_status, idx_due_date) además del de su columna de usuario, y la UNION solo
+     * reúne las tareas que pasan los filtros.
+     *
+     * con límite, cada rama lleva además el orden y el LIMIT de la página: las de created_by y
+     * assigned_to recorren su índice (columna, created_at), que en InnoDB termina en id, y se
+     * detienen tras "limit" filas; la de task_assignments lee las asignaciones del usuario por
+     * idx_user_task y se queda con las primeras. fuera solo se ordenan como mucho tres páginas,
+     * así que el coste no crece con el total de tareas visibles del usuario
+     */
+    private static void appendUserQuery(StringBuilder sql, List<Object> params, Long userId, TaskQuery query) {
+        StringBuilder conditions = new StringBuilder();
+        List<Object> conditionParams = new ArrayList<>();
+        
+        if (query.getStatus() != null) {
+            conditions.append(" AND b.status = ?");
+            conditionParams.add(query.getStatus().name());
+        }
+        if (query.getCategory() != null) {
+            conditions.append(" AND b.category = ?");
+            conditionParams.add(query.getCategory());
+        }
+        if (query.getDueAfter() != null) {
+            conditions.append(" AND b.due_date > ?");
+            conditionParams.add(Timestamp.valueOf(query.getDueAfter()));
+        }
+        if (query.getDueBefore() != null) {
+            conditions.append(" AND b.due_date < ?");
+            conditionParams.add(Timestamp.valueOf(query.getDueBefore()));
+        }
+        if (query.getCreatedBy() != null) {
+            conditions.append(" AND b.created_by = ?");
+            conditionParams.add(query.getCreatedBy());
+        }
+        
+        String orderBy;
+        if (query.getSort() == TaskQuery.Sort.DUE_DATE) {
+            if (query.getAfterId() != null) {
+                if (query.getAfterValue() != null) {
+                    conditions.append(" AND (b.due_date > ? OR (b.due_date = ? AND b.id > ?) OR b.due_date IS NULL)");
+                    conditionParams.add(Timestamp.valueOf(query.getAfterValue()));
+                    conditionParams.add(Timestamp.valueOf(query.getAfterValue()));
+                } else {
+                    conditions.append(" AND b.due_date IS NULL AND b.id > ?");
+                }
+                conditionParams.add(query.getAfterId());
+            }
+            orderBy = " ORDER BY %1$s.due_date IS NULL, %1$s.due_date, %1$s.id";
+        } else {
+            if (query.getAfterId() != null) {
+                conditions.append(" AND (b.created_at < ? OR (b.created_at = ? AND b.id < ?))");
+                conditionParams.add(Timestamp.valueOf(query.getAfterValue()));
+                conditionParams.add(Timestamp.valueOf(query.getAfterValue()));
+                conditionParams.add(query.getAfterId());
+            }
+            orderBy = " ORDER BY %1$s.created_at DESC, %1$s.id DESC";
+        }
+        
+        List<String> branches = query.isAssignedToMe()
+            ? List.of(ASSIGNED_TO_BRANCH, ASSIGNMENTS_BRANCH)
+            : List.of(CREATED_BRANCH, ASSIGNED_TO_BRANCH, ASSIGNMENTS_BRANCH);
+        
+        sql.append(" JOIN (");
+        for (int i = 0; i < branches.size(); i++) {
+            if (i > 0) {
+                sql.append(" UNION ");
+            }
+            params.add(userId);
+            params.addAll(conditionParams);
+            if (query.getLimit() > 0) {
+                sql.append('(').append(branches.get(i)).append(conditions)
+                    .append(orderBy.formatted("b")).append(" LIMIT ?)");
+                params.add(query.getLimit());
+            } else {
+                sql.append(branches.get(i)).append(conditions);
+            }
+        }
+        sql.append(") v ON v.id = t.id").append(orderBy.formatted("t"));
+        
+        if (query.getLimit() > 0) {
+            sql.append(" LIMIT ?");
+            params.add(query.getLimit());
+        }
+    }
+    
+    /**
+     * obtiene las tareas visibles para un usuario aplicando filtros, orden y paginación en SQL
+     *
+     * las tareas visibles salen de la UNION de ids por índice (como findByUserId), con los
+     * filtros dentro de cada rama, y se leen por clave primaria. la paginación es por clave:
+     * con orden createdAt continúa tras (created_at, id) hacia atrás; con orden dueDate
+     * continúa tras (due_date, id), dejando al final las tareas sin fecha.
+     */
+    public List<Task> findByUserQuery(Long userId, TaskQuery query) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT t.* FROM tasks t");
+        List<Object> params = new ArrayList<>();
+        appendUserQuery(sql, params, userId, query);
+        
+        List<Task> tasks = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tasks.add(mapResultSetToTask(rs));
+                }
+            }
+            
+            loadRelations(conn, tasks);
+        }
+        
+        return tasks;
+    }
+    
+    /**
+     * recibe cada tarea de un recorrido en streaming
+     */
+    public interface TaskRowHandler {
+        void handle(Task task) throws IOException;
+    }
+    
+    /**
+     * fila de exportación: la tarea, el username del creador y sus asignaciones concatenadas
+     * (user_id, username, nombre y apellido separados por CHAR(31), cada asignación por CHAR(30))
+     * para no lanzar consultas por fila mientras el resultado está abierto en streaming. el
+     * límite de GROUP_CONCAT se sube solo para esta consulta con SET_VAR, sin cambiar la sesión
+     * de una conexión que vuelve al pool
+     */
+    private static final String EXPORT_SQL = """
+        SELECT /*+ SET_VAR(group_concat_max_len = 1048576) */ t.*, c.username AS creator_username,
+               (SELECT GROUP_CONCAT(CONCAT_WS(CHAR(31 USING utf8mb4), ta2.user_id, IFNULL(u.username, ''),
+                                              IFNULL(u.first_name, ''), IFNULL(u.last_name, ''))
+                                    ORDER BY ta2.id SEPARATOR '\u001E')
+                FROM task_assignments ta2
+                LEFT JOIN users u ON u.id = ta2.user_id
+                WHERE ta2.task_id = t.id) AS assignments
+        FROM tasks t
+        LEFT JOIN users c ON c.id = t.created_by""";
+    
+    /**
+     * recorre las tareas visibles de un usuario con los filtros y orden de la consulta y
+     * entrega cada una al handler según se lee, sin cargar el resultado en memoria: el
+     * ResultSet es forward-only y con fetch size Integer.MIN_VALUE el driver de MySQL lee
+     * las filas del socket de una en una
+     */
+    public void streamByUserQuery(Long userId, TaskQuery query, TaskRowHandler handler) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder(EXPORT_SQL);
+        List<Object> params = new ArrayList<>();
+        appendUserQuery(sql, params, userId, query);
+        
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Task task = mapResultSetToTask(rs);
+                        task.setCreatedByUsername(rs.getString("creator_username"));
+                        mapAssignments(task, rs.getString("assignments"));
+                        handler.handle(task);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void mapAssignments(Task task, String assignments) {
+        task.setAssignedUsers(new ArrayList<>());
+        task.setAssignedUsersNames(new ArrayList<>());
+        if (assignments == null || assignments.isEmpty()) {
+            return;
+        }
+        
+        List<String[]> names = new ArrayList<>();
+        for (String assignment : assignments.split("\u001E")) {
+            String[] fields = assignment.split("\u001F", -1);
+            task.getAssignedUsers().add(Long.parseLong(fields[0]));
+            if (fields.length == 4 && !fields[1].isEmpty()) {
+                names.add(new String[] { fields[1], UserDirectory.formatDisplayName(fields[1], fields[2], fields[3]) });
+            }
+        }
+        task.setAssignedUsersNames(sortedDisplayNames(names));
+    }
+    
     /**
      * obtiene tareas creadas por un usuario
      */
@@ -232,20 +621,18 @@ public class TaskDAO {
         String sql = "SELECT * FROM tasks WHERE created_by = ? ORDER BY created_at DESC";
         List<Task> tasks = new ArrayList<>();
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, userId);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Task task = mapResultSetToTask(rs);
-                    task.setAssignedUsers(loadAssignedUsers(task.getId()));
-                    task.setAssignedUsersNames(loadAssignedUsersNames(task.getId()));
-                    task.setCreatedByUsername(loadCreatorUsername(task.getCreatedBy()));
-                    tasks.add(task);
+                    tasks.add(mapResultSetToTask(rs));
                 }
             }
+            
+            loadRelations(conn, tasks);
         }
         
         return tasks;
@@ -263,7 +650,7 @@ public class TaskDAO {
             """;
         List<Task> tasks = new ArrayList<>();
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, userId);
@@ -271,13 +658,11 @@ public class TaskDAO {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Task task = mapResultSetToTask(rs);
-                    task.setAssignedUsers(loadAssignedUsers(task.getId()));
-                    task.setAssignedUsersNames(loadAssignedUsersNames(task.getId()));
-                    task.setCreatedByUsername(loadCreatorUsername(task.getCreatedBy()));
-                    tasks.add(task);
+                    tasks.add(mapResultSetToTask(rs));
                 }
             }
+            
+            loadRelations(conn, tasks);
         }
         
         return tasks;
@@ -290,68 +675,678 @@ public class TaskDAO {
         String sql = "SELECT * FROM tasks ORDER BY created_at DESC";
         List<Task> tasks = new ArrayList<>();
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                Task task = mapResultSetToTask(rs);
-                task.setAssignedUsers(loadAssignedUsers(task.getId()));
-                task.setAssignedUsersNames(loadAssignedUsersNames(task.getId()));
-                task.setCreatedByUsername(loadCreatorUsername(task.getCreatedBy()));
-                tasks.add(task);
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    tasks.add(mapResultSetToTask(rs));
+                }
             }
+            
+            loadRelations(conn, tasks);
         }
         
         return tasks;
     }
     
     /**
-     * actualiza una tarea
+     * fila de una tarea con sus asignaciones en una sola consulta (una fila por asignación);
+     * los nombres se resuelven con userDirectory
+     */
+    private static final String FIND_WITH_RELATIONS_SQL = """
+        SELECT t.*, ta.user_id AS assigned_user_id
+        FROM tasks t
+        LEFT JOIN task_assignments ta ON ta.task_id = t.id
+        WHERE t.id = ?
+        ORDER BY ta.id
+        """;
+    
+    /**
+     * aplica un PATCH con un único UPDATE condicionado al creador (y a la versión si el
+     * cliente la envía), sin leer la tarea antes. solo si no se actualizó ninguna fila se
+     * consulta created_by y version para distinguir 404, 403 y 409. la tarea resultante se
+     * lee en la misma transacción con FIND_WITH_RELATIONS_SQL
+     */
+    public TaskPatchResult patch(Long taskId, Long userId, TaskPatch patch) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE tasks SET ");
+        List<Object> params = new ArrayList<>();
+        
+        if (patch.hasTitle()) {
+            sql.append("title = ?, ");
+            params.add(patch.getTitle());
+        }
+        if (patch.hasDescription()) {
+            sql.append("description = ?, ");
+            params.add(patch.getDescription());
+        }
+        if (patch.hasCategory()) {
+            sql.append("category = ?, ");
+            params.add(patch.getCategory());
+        }
+        if (patch.hasAssignedTo()) {
+            sql.append("assigned_to = ?, ");
+            params.add(patch.getAssignedTo());
+        }
+        if (patch.hasDueDate()) {
+            sql.append("due_date = ?, ");
+            params.add(patch.getDueDate() != null ? Timestamp.valueOf(patch.getDueDate()) : null);
+        }
+        if (patch.hasStatus()) {
+            // MySQL evalúa las asignaciones en orden: completed_at todavía ve el estado anterior
+            sql.append("completed_at = IF(? = 'COMPLETED', IF(status = 'COMPLETED', completed_at, NOW()), NULL), status = ?, ");
+            params.add(patch.getStatus().name());
+            params.add(patch.getStatus().name());
+        }
+        sql.append("version = version + 1 WHERE id = ? AND created_by = ?");
+        params.add(taskId);
+        params.add(userId);
+        if (patch.getExpectedVersion() != null) {
+            sql.append(" AND version = ?");
+            params.add(patch.getExpectedVersion());
+        }
+        
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int updated;
+                try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < params.size(); i++) {
+                        stmt.setObject(i + 1, params.get(i));
+                    }
+                    updated = stmt.executeUpdate();
+                }
+                
+                if (updated == 0) {
+                    TaskPatchResult result = classifyFailedPatch(conn, taskId, userId);
+                    conn.rollback();
+                    return result;
+                }
+                
+                if (patch.getAssignedUsers() != null) {
+                    syncAssignedUsers(conn, Map.of(taskId, patch.getAssignedUsers()));
+                }
+                
+                Task task = findWithRelations(conn, taskId);
+                conn.commit();
+                return TaskPatchResult.updated(task);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    private TaskPatchResult classifyFailedPatch(Connection conn, Long taskId, Long userId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT created_by, version FROM tasks WHERE id = ?")) {
+            stmt.setLong(1, taskId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return TaskPatchResult.notFound();
+                }
+                if (rs.getLong("created_by") != userId) {
+                    return TaskPatchResult.forbidden();
+                }
+                return TaskPatchResult.conflict(rs.getInt("version"));
+            }
+        }
+    }
+    
+    private Task findWithRelations(Connection conn, Long taskId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(FIND_WITH_RELATIONS_SQL)) {
+            stmt.setLong(1, taskId);
+            Task task = null;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (task == null) {
+                        task = mapResultSetToTask(rs);
+                        task.setAssignedUsers(new ArrayList<>());
+                    }
+                    
+                    long assignedUserId = rs.getLong("assigned_user_id");
+                    if (!rs.wasNull()) {
+                        task.getAssignedUsers().add(assignedUserId);
+                    }
+                }
+            }
+            if (task != null) {
+                loadUserNames(conn, List.of(task));
+            }
+            return task;
+        }
+    }
+    
+    /**
+     * actualiza una tarea y la devuelve con los nombres del creador y de los asignados
      */
     public Task update(Task task) throws SQLException {
         String sql = """
-            UPDATE tasks 
-            SET title = ?, description = ?, status = ?, category = ?, 
-                assigned_to = ?, due_date = ?, completed_at = ?
+            UPDATE tasks
+            SET title = ?, description = ?, status = ?, category = ?,
+                assigned_to = ?, due_date = ?, completed_at = ?, version = version + 1
             WHERE id = ?
             """;
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, task.getTitle());
-            stmt.setString(2, task.getDescription());
-            stmt.setString(3, task.getStatus() != null ? task.getStatus().name() : "PENDING");
-            stmt.setString(4, task.getCategory());
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setString(1, task.getTitle());
+                    stmt.setString(2, task.getDescription());
+                    stmt.setString(3, task.getStatus() != null ? task.getStatus().name() : "PENDING");
+                    stmt.setString(4, task.getCategory());
+                    
+                    if (task.getAssignedTo() != null) {
+                        stmt.setLong(5, task.getAssignedTo());
+                    } else {
+                        stmt.setNull(5, Types.BIGINT);
+                    }
+                    
+                    if (task.getDueDate() != null) {
+                        stmt.setTimestamp(6, Timestamp.valueOf(task.getDueDate()));
+                    } else {
+                        stmt.setNull(6, Types.TIMESTAMP);
+                    }
+                    
+                    if (task.getCompletedAt() != null) {
+                        stmt.setTimestamp(7, Timestamp.valueOf(task.getCompletedAt()));
+                    } else {
+                        stmt.setNull(7, Types.TIMESTAMP);
+                    }
+                    
+                    stmt.setLong(8, task.getId());
+                    
+                    if (stmt.executeUpdate() > 0 && task.getVersion() != null) {
+                        task.setVersion(task.getVersion() + 1);
+                    }
+                }
+                
+                if (task.getAssignedUsers() != null) {
+                    syncAssignedUsers(conn, Map.of(task.getId(), task.getAssignedUsers()));
+                }
+                loadUserNames(conn, List.of(task));
+                
+                conn.commit();
+                return task;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * UPDATE parcial con forma fija para poder ir en un único batch: cada columna lleva un
+     * indicador "presente" y conserva su valor si no viene en el PATCH
+     */
+    private static final String BULK_UPDATE_SQL = """
+        UPDATE tasks SET
+            title = IF(?, ?, title),
+            description = IF(?, ?, description),
+            category = IF(?, ?, category),
+            assigned_to = IF(?, ?, assigned_to),
+            due_date = IF(?, ?, due_date),
+            completed_at = IF(?, IF(? = 'COMPLETED', IF(status = 'COMPLETED', completed_at, NOW()), NULL), completed_at),
+            status = IF(?, ?, status),
+            version = version + 1
+        WHERE id = ? AND created_by = ? AND (? IS NULL OR version = ?)
+        """;
+    
+    /**
+     * ejecuta las operaciones pendientes de un lote en una sola transacción: un batch JDBC
+     * para las altas, otro para las actualizaciones y otro para las bajas, en ese orden, más
+     * un batch por tabla para las asignaciones. las operaciones sobre tareas que no existen,
+     * de otro creador o con versión obsoleta quedan con 404/403/409 sin afectar al resto;
+     * un error SQL deshace el lote completo
+     */
+    public void executeBulk(Long userId, List<TaskBulkOperation> operations) throws SQLException {
+        List<TaskBulkOperation> creates = new ArrayList<>();
+        List<TaskBulkOperation> updates = new ArrayList<>();
+        List<TaskBulkOperation> deletes = new ArrayList<>();
+        // cada tarea solo puede aparecer en una operación: los cambios se aplican en batch antes
+        // que las bajas, así que un UPDATE y un DELETE de la misma tarea no tendrían un orden claro
+        Set<Long> taskIds = new HashSet<>();
+        for (TaskBulkOperation operation : operations) {
+            if (!operation.isPending()) {
+                continue;
+            }
+            if (operation.getType() != TaskBulkOperation.Type.CREATE && !taskIds.add(operation.getTaskId())) {
+                operation.fail(409, "La tarea " + operation.getTaskId() + " ya aparece en otra operación del lote");
+                continue;
+            }
+            switch (operation.getType()) {
+                case CREATE -> creates.add(operation);
+                case UPDATE -> updates.add(operation);
+                case DELETE -> deletes.add(operation);
+            }
+        }
+        
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Long> createdIds = bulkInsert(conn, creates);
+                List<TaskBulkOperation> failed = new ArrayList<>();
+                List<TaskBulkOperation> updated = bulkUpdate(conn, userId, updates, failed);
+                bulkDelete(conn, userId, deletes, failed);
+                classifyFailedBulk(conn, userId, failed);
+                
+                List<Long> reloadIds = new ArrayList<>(createdIds);
+                for (TaskBulkOperation operation : updated) {
+                    reloadIds.add(operation.getTaskId());
+                }
+                Map<Long, Task> reloaded = findByIds(conn, reloadIds);
+                
+                for (int i = 0; i < creates.size(); i++) {
+                    creates.get(i).succeed(201, reloaded.get(createdIds.get(i)));
+                }
+                for (TaskBulkOperation operation : updated) {
+                    Task task = reloaded.get(operation.getTaskId());
+                    if (task != null) {
+                        operation.succeed(200, task);
+                    } else {
+                        operation.fail(404, "Tarea no encontrada");
+                    }
+                }
+                
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    private List<Long> bulkInsert(Connection conn, List<TaskBulkOperation> creates) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        if (creates.isEmpty()) {
+            return ids;
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (TaskBulkOperation operation : creates) {
+                bindInsert(stmt, operation.getTask());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
             
-            if (task.getAssignedTo() != null) {
-                stmt.setLong(5, task.getAssignedTo());
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    ids.add(generatedKeys.getLong(1));
+                }
+            }
+        }
+        if (ids.size() != creates.size()) {
+            throw new SQLException("El batch de altas devolvió " + ids.size() + " ids para " + creates.size() + " tareas");
+        }
+        
+        Map<Long, Collection<Long>> assignments = new LinkedHashMap<>();
+        for (int i = 0; i < creates.size(); i++) {
+            List<Long> assignedUsers = creates.get(i).getTask().getAssignedUsers();
+            if (!assignedUsers.isEmpty()) {
+                assignments.put(ids.get(i), new LinkedHashSet<>(assignedUsers));
+            }
+        }
+        insertAssignments(conn, assignments);
+        return ids;
+    }
+    
+    /**
+     * devuelve las actualizaciones aplicadas y agrega a failed las que no afectaron ninguna fila
+     */
+    private List<TaskBulkOperation> bulkUpdate(Connection conn, Long userId, List<TaskBulkOperation> updates,
+                                               List<TaskBulkOperation> failed) throws SQLException {
+        List<TaskBulkOperation> updated = new ArrayList<>();
+        if (updates.isEmpty()) {
+            return updated;
+        }
+        
+        int[] counts;
+        try (PreparedStatement stmt = conn.prepareStatement(BULK_UPDATE_SQL)) {
+            for (TaskBulkOperation operation : updates) {
+                TaskPatch patch = operation.getPatch();
+                String status = patch.hasStatus() ? patch.getStatus().name() : null;
+                int i = 1;
+                stmt.setBoolean(i++, patch.hasTitle());
+                stmt.setString(i++, patch.getTitle());
+                stmt.setBoolean(i++, patch.hasDescription());
+                stmt.setString(i++, patch.getDescription());
+                stmt.setBoolean(i++, patch.hasCategory());
+                stmt.setString(i++, patch.getCategory());
+                stmt.setBoolean(i++, patch.hasAssignedTo());
+                stmt.setObject(i++, patch.getAssignedTo(), Types.BIGINT);
+                stmt.setBoolean(i++, patch.hasDueDate());
+                stmt.setTimestamp(i++, patch.getDueDate() != null ? Timestamp.valueOf(patch.getDueDate()) : null);
+                stmt.setBoolean(i++, patch.hasStatus());
+                stmt.setString(i++, status);
+                stmt.setBoolean(i++, patch.hasStatus());
+                stmt.setString(i++, status);
+                stmt.setLong(i++, operation.getTaskId());
+                stmt.setLong(i++, userId);
+                stmt.setObject(i++, patch.getExpectedVersion(), Types.INTEGER);
+                stmt.setObject(i++, patch.getExpectedVersion(), Types.INTEGER);
+                stmt.addBatch();
+            }
+            counts = stmt.executeBatch();
+        }
+        
+        Map<Long, List<Long>> assignments = new LinkedHashMap<>();
+        for (int i = 0; i < updates.size(); i++) {
+            TaskBulkOperation operation = updates.get(i);
+            if (counts[i] == 0) {
+                failed.add(operation);
+                continue;
+            }
+            updated.add(operation);
+            if (operation.getPatch().getAssignedUsers() != null) {
+                assignments.put(operation.getTaskId(), operation.getPatch().getAssignedUsers());
+            }
+        }
+        syncAssignedUsers(conn, assignments);
+        return updated;
+    }
+    
+    private void bulkDelete(Connection conn, Long userId, List<TaskBulkOperation> deletes,
+                            List<TaskBulkOperation> failed) throws SQLException {
+        if (deletes.isEmpty()) {
+            return;
+        }
+        
+        int[] counts;
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM tasks WHERE id = ? AND created_by = ?")) {
+            for (TaskBulkOperation operation : deletes) {
+                stmt.setLong(1, operation.getTaskId());
+                stmt.setLong(2, userId);
+                stmt.addBatch();
+            }
+            counts = stmt.executeBatch();
+        }
+        
+        for (int i = 0; i < deletes.size(); i++) {
+            if (counts[i] == 0) {
+                failed.add(deletes.get(i));
             } else {
-                stmt.setNull(5, Types.BIGINT);
+                deletes.get(i).succeed(204, null);
             }
-            
-            if (task.getDueDate() != null) {
-                stmt.setTimestamp(6, Timestamp.valueOf(task.getDueDate()));
+        }
+    }
+    
+    /**
+     * asigna 404, 403 o 409 a las operaciones que no afectaron ninguna fila
+     */
+    private void classifyFailedBulk(Connection conn, Long userId, List<TaskBulkOperation> failed) throws SQLException {
+        if (failed.isEmpty()) {
+            return;
+        }
+        
+        Set<Long> ids = new LinkedHashSet<>();
+        for (TaskBulkOperation operation : failed) {
+            ids.add(operation.getTaskId());
+        }
+        Map<Long, Long> creators = new HashMap<>();
+        Map<Long, Integer> versions = new HashMap<>();
+        List<Long> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += IN_BATCH_SIZE) {
+            List<Long> batch = idList.subList(from, Math.min(from + IN_BATCH_SIZE, idList.size()));
+            String sql = "SELECT id, created_by, version FROM tasks WHERE id IN (" + placeholders(batch.size()) + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                bindIds(stmt, batch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        creators.put(rs.getLong("id"), rs.getLong("created_by"));
+                        versions.put(rs.getLong("id"), rs.getInt("version"));
+                    }
+                }
+            }
+        }
+        
+        for (TaskBulkOperation operation : failed) {
+            Long creator = creators.get(operation.getTaskId());
+            if (creator == null) {
+                operation.fail(404, "Tarea no encontrada");
+            } else if (!creator.equals(userId)) {
+                operation.fail(403, "No autorizado");
             } else {
-                stmt.setNull(6, Types.TIMESTAMP);
+                operation.fail(409, "La tarea fue modificada por otra petición (versión actual "
+                    + versions.get(operation.getTaskId()) + ")");
             }
-            
-            if (task.getCompletedAt() != null) {
-                stmt.setTimestamp(7, Timestamp.valueOf(task.getCompletedAt()));
+        }
+    }
+    
+    /**
+     * carga varias tareas con sus relaciones, indexadas por id
+     */
+    private Map<Long, Task> findByIds(Connection conn, List<Long> ids) throws SQLException {
+        Map<Long, Task> tasks = new LinkedHashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + IN_BATCH_SIZE, ids.size()));
+            String sql = "SELECT * FROM tasks WHERE id IN (" + placeholders(batch.size()) + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                bindIds(stmt, batch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Task task = mapResultSetToTask(rs);
+                        tasks.put(task.getId(), task);
+                    }
+                }
+            }
+        }
+        loadRelations(conn, new ArrayList<>(tasks.values()));
+        return tasks;
+    }
+    
+    /**
+     * origen de las filas de una importación
+     */
+    public interface TaskImportSource {
+        /**
+         * siguiente tarea a importar, o null al terminar
+         */
+        TaskImportRecord next() throws IOException;
+        
+        /**
+         * se llama tras cada commit, con las tareas confirmadas hasta el momento
+         */
+        void committed(TaskImportProgress progress);
+    }
+    
+    /**
+     * importa las tareas del origen en batches de batchSize filas (un INSERT multi-fila por
+     * batch gracias a rewriteBatchedStatements) y hace commit cada commitInterval tareas.
+     * los usernames y ids de usuario referenciados se resuelven con un caché propio de la
+     * importación, con una consulta por batch solo para los que aún no conoce; las filas que
+     * referencian usuarios inexistentes se descartan. un error deshace lo pendiente de
+     * confirmar y detiene la importación
+     */
+    public void importTasks(TaskImportSource source, int batchSize, int commitInterval,
+                            TaskImportProgress progress) throws SQLException, IOException {
+        UserLookup users = new UserLookup();
+        List<TaskImportRecord> batch = new ArrayList<>(batchSize);
+        
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int uncommitted = 0;
+                TaskImportRecord record;
+                do {
+                    record = source.next();
+                    if (record != null) {
+                        batch.add(record);
+                    }
+                    if (batch.size() == batchSize || (record == null && !batch.isEmpty())) {
+                        uncommitted += importBatch(conn, batch, users, progress);
+                        batch.clear();
+                    }
+                    if (uncommitted >= commitInterval || (record == null && uncommitted > 0)) {
+                        conn.commit();
+                        progress.committed();
+                        source.committed(progress);
+                        uncommitted = 0;
+                    }
+                } while (record != null);
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * resuelve los usuarios del batch e inserta las filas válidas; devuelve cuántas insertó
+     */
+    private int importBatch(Connection conn, List<TaskImportRecord> batch, UserLookup users,
+                            TaskImportProgress progress) throws SQLException {
+        users.load(conn, batch);
+        
+        List<Task> tasks = new ArrayList<>(batch.size());
+        for (TaskImportRecord record : batch) {
+            String error = users.resolve(record);
+            if (error != null) {
+                progress.fail(record.getLine(), error);
             } else {
-                stmt.setNull(7, Types.TIMESTAMP);
+                tasks.add(record.getTask());
             }
+        }
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+        
+        List<Long> ids = new ArrayList<>(tasks.size());
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (Task task : tasks) {
+                bindInsert(stmt, task);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
             
-            stmt.setLong(8, task.getId());
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    ids.add(generatedKeys.getLong(1));
+                }
+            }
+        }
+        if (ids.size() != tasks.size()) {
+            throw new SQLException("El batch de importación devolvió " + ids.size() + " ids para " + tasks.size() + " tareas");
+        }
+        
+        Map<Long, Collection<Long>> assignments = new LinkedHashMap<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).setId(ids.get(i));
+            if (!tasks.get(i).getAssignedUsers().isEmpty()) {
+                assignments.put(ids.get(i), new LinkedHashSet<>(tasks.get(i).getAssignedUsers()));
+            }
+        }
+        insertAssignments(conn, assignments);
+        
+        progress.batchInserted(tasks.size());
+        return tasks.size();
+    }
+    
+    /**
+     * caché de usuarios de una importación: username (sin distinguir mayúsculas) -> id, y
+     * los ids que existen. lo que no se encontró también se recuerda para no volver a buscarlo
+     */
+    private static class UserLookup {
+        private final Map<String, Long> idsByUsername = new HashMap<>();
+        private final Map<Long, Boolean> existingIds = new HashMap<>();
+        
+        /**
+         * busca con una consulta por cada IN_BATCH_SIZE valores los usuarios del batch que aún no están en caché
+         */
+        void load(Connection conn, List<TaskImportRecord> batch) throws SQLException {
+            Set<String> usernames = new LinkedHashSet<>();
+            Set<Long> ids = new LinkedHashSet<>();
+            for (TaskImportRecord record : batch) {
+                if (record.getAssignedToUsername() != null) {
+                    usernames.add(key(record.getAssignedToUsername()));
+                }
+                for (String username : record.getAssignedUsernames()) {
+                    usernames.add(key(username));
+                }
+                if (record.getTask().getAssignedTo() != null) {
+                    ids.add(record.getTask().getAssignedTo());
+                }
+                ids.addAll(record.getTask().getAssignedUsers());
+            }
+            usernames.removeAll(idsByUsername.keySet());
+            ids.removeAll(existingIds.keySet());
+            
+            List<String> pendingUsernames = new ArrayList<>(usernames);
+            for (int from = 0; from < pendingUsernames.size(); from += IN_BATCH_SIZE) {
+                List<String> chunk = pendingUsernames.subList(from, Math.min(from + IN_BATCH_SIZE, pendingUsernames.size()));
+                String sql = "SELECT id, username FROM users WHERE username IN (" + placeholders(chunk.size()) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setString(i + 1, chunk.get(i));
+                    }
+                    remember(stmt);
+                }
+            }
             
-            stmt.executeUpdate();
+            List<Long> pendingIds = new ArrayList<>(ids);
+            pendingIds.removeAll(existingIds.keySet());
+            for (int from = 0; from < pendingIds.size(); from += IN_BATCH_SIZE) {
+                List<Long> chunk = pendingIds.subList(from, Math.min(from + IN_BATCH_SIZE, pendingIds.size()));
+                String sql = "SELECT id, username FROM users WHERE id IN (" + placeholders(chunk.size()) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    bindIds(stmt, chunk);
+                    remember(stmt);
+                }
+            }
             
-            if (task.getAssignedUsers() != null) {
-                saveAssignedUsers(task.getId(), task.getAssignedUsers());
+            for (String username : usernames) {
+                idsByUsername.putIfAbsent(username, null);
+            }
+            for (Long id : ids) {
+                existingIds.putIfAbsent(id, false);
+            }
+        }
+        
+        private void remember(PreparedStatement stmt) throws SQLException {
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    idsByUsername.put(key(rs.getString("username")), rs.getLong("id"));
+                    existingIds.put(rs.getLong("id"), true);
+                }
+            }
+        }
+        
+        /**
+         * completa assignedTo y assignedUsers de la tarea con los usernames del registro;
+         * devuelve el error si algún usuario no existe
+         */
+        String resolve(TaskImportRecord record) {
+            Task task = record.getTask();
+            if (record.getAssignedToUsername() != null) {
+                Long id = idsByUsername.get(key(record.getAssignedToUsername()));
+                if (id == null) {
+                    return "Usuario no encontrado: " + record.getAssignedToUsername();
+                }
+                task.setAssignedTo(id);
+            }
+            if (task.getAssignedTo() != null && !existingIds.getOrDefault(task.getAssignedTo(), false)) {
+                return "Usuario no encontrado: " + task.getAssignedTo();
             }
             
-            return task;
+            List<Long> assignedUsers = new ArrayList<>(task.getAssignedUsers());
+            for (Long id : assignedUsers) {
+                if (!existingIds.getOrDefault(id, false)) {
+                    return "Usuario no encontrado: " + id;
+                }
+            }
+            for (String username : record.getAssignedUsernames()) {
+                Long id = idsByUsername.get(key(username));
+                if (id == null) {
+                    return "Usuario no encontrado: " + username;
+                }
+                if (!assignedUsers.contains(id)) {
+                    assignedUsers.add(id);
+                }
+            }
+            task.setAssignedUsers(assignedUsers);
+            return null;
+        }
+        
+        private static String key(String username) {
+            return username.toLowerCase(Locale.ROOT);
         }
     }
     
@@ -361,7 +1356,7 @@ public class TaskDAO {
     public boolean delete(Long id) throws SQLException {
         String sql = "DELETE FROM tasks WHERE id = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, id);
@@ -375,7 +1370,7 @@ public class TaskDAO {
     public boolean deleteByIdAndUserId(Long id, Long userId) throws SQLException {
         String sql = "DELETE FROM tasks WHERE id = ? AND created_by = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, id);
@@ -426,6 +1421,8 @@ public class TaskDAO {
             task.setCompletedAt(completedAt.toLocalDateTime());
         }
         
+        task.setVersion(rs.getInt("version"));
+        
         return task;
     }
 }
@@ -14,12 +14,46 @@ import java.util.Optional;
 public class UserDAO {
     
     /**
-     * crea un nuevo usuario
+     * directorio de nombres que usan las tareas; se actualiza con cada alta, cambio o baja
+     */
+    private final UserDirectory userDirectory = UserDirectory.getInstance();
+    
+    /**
+     * usernames y emails registrados, para responder disponibilidad sin consultar
+     */
+    private final UserNameFilter nameFilter = UserNameFilter.getInstance();
+    
+    /**
+     * código de error de MySQL para una clave única duplicada (ER_DUP_ENTRY)
+     */
+    private static final int DUPLICATE_ENTRY_ERROR = 1062;
+    
+    /**
+     * el INSERT o UPDATE chocó con la restricción única de username o de email
+     */
+    public static final class DuplicateUserException extends SQLException {
+        private static final long serialVersionUID = 1L;
+        
+        private final boolean email;
+        
+        private DuplicateUserException(SQLException cause, boolean email) {
+            super(cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+            this.email = email;
+        }
+        
+        /**
+         * true si el duplicado es el email; false si es el username
+         */
+        public boolean isEmail() { return email; }
+    }
+    
+    /**
+     * crea un nuevo usuario; si el username o el email ya existen lanza DuplicateUserException
      */
     public User create(User user) throws SQLException {
         String sql = "INSERT INTO users (username, email, password, first_name, last_name) VALUES (?, ?, ?, ?, ?)";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             
             stmt.setString(1, user.getUsername());
@@ -36,9 +70,13 @@ public class UserDAO {
                         user.setId(generatedKeys.getLong(1));
                     }
                 }
+                userDirectory.put(user);
+                nameFilter.add(user.getUsername(), user.getEmail());
             }
             
             return user;
+        } catch (SQLException e) {
+            throw duplicateOr(e, user);
         }
     }
     
@@ -48,7 +86,7 @@ public class UserDAO {
     public Optional<User> findById(Long id) throws SQLException {
         String sql = "SELECT * FROM users WHERE id = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, id);
@@ -69,7 +107,7 @@ public class UserDAO {
     public Optional<User> findByUsername(String username) throws SQLException {
         String sql = "SELECT * FROM users WHERE username = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, username);
@@ -90,7 +128,7 @@ public class UserDAO {
     public Optional<User> findByEmail(String email) throws SQLException {
         String sql = "SELECT * FROM users WHERE email = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, email);
@@ -111,7 +149,7 @@ public class UserDAO {
     public boolean existsByUsername(String username) throws SQLException {
         String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, username);
@@ -132,7 +170,7 @@ public class UserDAO {
     public boolean existsByEmail(String email) throws SQLException {
         String sql = "SELECT COUNT(*) FROM users WHERE email = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, email);
@@ -147,6 +185,21 @@ public class UserDAO {
         return false;
     }
     
+    /**
+     * true si el username está libre; casi siempre lo responde el filtro en memoria y solo
+     * consulta la base de datos cuando el filtro no puede descartarlo
+     */
+    public boolean isUsernameAvailable(String username) throws SQLException {
+        return !nameFilter.mightBeTakenUsername(username) || !existsByUsername(username);
+    }
+    
+    /**
+     * true si el email está libre (como isUsernameAvailable)
+     */
+    public boolean isEmailAvailable(String email) throws SQLException {
+        return !nameFilter.mightBeTakenEmail(email) || !existsByEmail(email);
+    }
+    
     /**
      * obtiene todos los usuarios
      */
@@ -154,7 +207,7 @@ public class UserDAO {
         String sql = "SELECT * FROM users ORDER BY created_at DESC";
         List<User> users = new ArrayList<>();
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -172,7 +225,7 @@ public class UserDAO {
     public User update(User user) throws SQLException {
         String sql = "UPDATE users SET username = ?, email = ?, first_name = ?, last_name = ? WHERE id = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, user.getUsername());
@@ -181,8 +234,28 @@ public class UserDAO {
             stmt.setString(4, user.getLastName());
             stmt.setLong(5, user.getId());
             
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) {
+                userDirectory.put(user);
+                nameFilter.add(user.getUsername(), user.getEmail());
+            }
             return user;
+        } catch (SQLException e) {
+            throw duplicateOr(e, user);
+        }
+    }
+    
+    /**
+     * reemplaza el hash de la contraseña de un usuario
+     */
+    public boolean updatePassword(Long id, String passwordHash) throws SQLException {
+        String sql = "UPDATE users SET password = ? WHERE id = ?";
+        
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, passwordHash);
+            stmt.setLong(2, id);
+            return stmt.executeUpdate() > 0;
         }
     }
     
@@ -192,12 +265,54 @@ public class UserDAO {
     public boolean delete(Long id) throws SQLException {
         String sql = "DELETE FROM users WHERE id = ?";
         
-        try (Connection conn = DatabaseConfig.createNewConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, id);
-            return stmt.executeUpdate() > 0;
+            boolean deleted = stmt.executeUpdate() > 0;
+            userDirectory.remove(id);
+            return deleted;
+        }
+    }
+    
+    /**
+     * DuplicateUserException si e es una clave única duplicada, o e tal cual.
+     *
+     * qué clave chocó se lee del mensaje del servidor, cuyo formato cambia con la versión: MySQL
+     * 5.7 escribe "for key 'email'" y 8.0 "for key 'users.email'". si el mensaje no trae una clave
+     * conocida se consulta si el email ya pertenece a otro usuario
+     */
+    private SQLException duplicateOr(SQLException e, User user) throws SQLException {
+        if (e.getErrorCode() != DUPLICATE_ENTRY_ERROR) {
+            return e;
+        }
+        String key = duplicateKey(e.getMessage());
+        boolean email;
+        if ("email".equals(key) || "username".equals(key)) {
+            email = "email".equals(key);
+        } else {
+            Optional<User> owner = user.getEmail() != null ? findByEmail(user.getEmail()) : Optional.empty();
+            email = owner.isPresent() && !owner.get().getId().equals(user.getId());
+        }
+        nameFilter.add(email ? null : user.getUsername(), email ? user.getEmail() : null);
+        return new DuplicateUserException(e, email);
+    }
+    
+    /**
+     * nombre de la clave de un error 1062 sin el prefijo de tabla, o null si no viene en el mensaje
+     */
+    private static String duplicateKey(String message) {
+        int start = message != null ? message.lastIndexOf("for key '") : -1;
+        if (start < 0) {
+            return null;
+        }
+        start += "for key '".length();
+        int end = message.indexOf('\'', start);
+        if (end < 0) {
+            return null;
         }
+        String key = message.substring(start, end);
+        return key.substring(key.lastIndexOf('.') + 1);
     }
     
     /**
@@ -0,0 +1,182 @@
+package com.kodeotask.dao;
+
+import com.kodeotask.config.DatabaseConfig;
+import com.kodeotask.model.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * directorio en memoria de usuarios por id: username y nombre visible ("Nombre Apellido (username)").
+ *
+ * cada usuario se lee de la base de datos la primera vez que se pide (varios a la vez con
+ * una consulta IN) y después se resuelve sin consultas. UserDAO lo mantiene al día al crear,
+ * actualizar o eliminar usuarios
+ */
+public final class UserDirectory {
+    
+    private static final int IN_BATCH_SIZE = 500;
+    
+    private static final UserDirectory INSTANCE = new UserDirectory();
+    
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    
+    /**
+     * bajas registradas; una carga que empezó antes de una baja no deja en memoria lo que leyó
+     */
+    private final AtomicLong removals = new AtomicLong();
+    
+    /**
+     * username y nombre visible de un usuario
+     */
+    public static final class Entry {
+        private final String username;
+        private final String displayName;
+        
+        private Entry(String username, String firstName, String lastName) {
+            this.username = username;
+            this.displayName = formatDisplayName(username, firstName, lastName);
+        }
+        
+        public String getUsername() { return username; }
+        public String getDisplayName() { return displayName; }
+    }
+    
+    private UserDirectory() {
+    }
+    
+    public static UserDirectory getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * resuelve los usuarios pedidos; solo pide una conexión si alguno no está en memoria.
+     * los ids que no existen no aparecen en el resultado
+     */
+    public Map<Long, Entry> resolve(Collection<Long> userIds) throws SQLException {
+        Map<Long, Entry> found = new HashMap<>();
+        if (collectKnown(userIds, found).isEmpty()) {
+            return found;
+        }
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return resolve(conn, userIds);
+        }
+    }
+    
+    /**
+     * como resolve(userIds), leyendo los que falten con la conexión (y transacción) de quien llama
+     */
+    public Map<Long, Entry> resolve(Connection conn, Collection<Long> userIds) throws SQLException {
+        Map<Long, Entry> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>(collectKnown(userIds, found));
+        long removalsBefore = removals.get();
+        
+        for (int from = 0; from < missing.size(); from += IN_BATCH_SIZE) {
+            List<Long> batch = missing.subList(from, Math.min(from + IN_BATCH_SIZE, missing.size()));
+            StringBuilder sql = new StringBuilder("SELECT id, username, first_name, last_name FROM users WHERE id IN (");
+            for (int i = 0; i < batch.size(); i++) {
+                sql.append(i > 0 ? ",?" : "?");
+            }
+            sql.append(")");
+            
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < batch.size(); i++) {
+                    stmt.setLong(i + 1, batch.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Long id = rs.getLong("id");
+                        Entry entry = new Entry(rs.getString("username"), rs.getString("first_name"), rs.getString("last_name"));
+                        // si UserDAO lo actualizó mientras tanto, gana su versión
+                        Entry previous = entries.putIfAbsent(id, entry);
+                        found.put(id, previous != null ? previous : entry);
+                        // si hubo una baja desde que empezó la carga, la fila leída puede ser de un
+                        // usuario ya eliminado: se devuelve a quien llama pero no se conserva
+                        if (previous == null && removals.get() != removalsBefore) {
+                            entries.remove(id, entry);
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * agrega a found los usuarios ya conocidos y devuelve los que faltan
+     */
+    private Set<Long> collectKnown(Collection<Long> userIds, Map<Long, Entry> found) {
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null) {
+                continue;
+            }
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                found.put(userId, entry);
+            } else {
+                missing.add(userId);
+            }
+        }
+        return missing;
+    }
+    
+    /**
+     * el usuario se creó o actualizó (llamado por UserDAO tras escribirlo)
+     */
+    void put(User user) {
+        if (user.getId() != null && user.getUsername() != null) {
+            entries.put(user.getId(), new Entry(user.getUsername(), user.getFirstName(), user.getLastName()));
+        }
+    }
+    
+    /**
+     * el usuario se eliminó (llamado por UserDAO)
+     */
+    void remove(Long userId) {
+        removals.incrementAndGet();
+        entries.remove(userId);
+    }
+    
+    /**
+     * nombres visibles de los usuarios que existen en users, ordenados por username sin distinguir mayúsculas
+     */
+    public static List<String> displayNames(Collection<Long> userIds, Map<Long, Entry> users) {
+        List<Entry> found = new ArrayList<>();
+        for (Long userId : userIds) {
+            Entry user = users.get(userId);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        found.sort((x, y) -> String.CASE_INSENSITIVE_ORDER.compare(x.username, y.username));
+        List<String> names = new ArrayList<>(found.size());
+        for (Entry user : found) {
+            names.add(user.displayName);
+        }
+        return names;
+    }
+    
+    /**
+     * formatea el nombre visible de un usuario: "Nombre Apellido (username)"
+     */
+    public static String formatDisplayName(String username, String firstName, String lastName) {
+        if (firstName != null && lastName != null && !firstName.isEmpty() && !lastName.isEmpty()) {
+            return firstName + " " + lastName + " (" + username + ")";
+        } else if (firstName != null && !firstName.isEmpty()) {
+            return firstName + " (" + username + ")";
+        }
+        return username;
+    }
+}
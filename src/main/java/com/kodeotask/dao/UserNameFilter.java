@@ -0,0 +1,141 @@
+package com.kodeotask.dao;
+
+import com.kodeotask.config.DatabaseConfig;
+import com.kodeotask.util.BloomFilter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * filtro de Bloom en memoria de los usernames y emails registrados.
+ *
+ * se llena al arrancar con todos los usuarios y UserDAO le agrega cada alta o cambio; un
+ * "no está" permite contestar sin consultar la base de datos, un "puede estar" se confirma con
+ * una consulta. las bajas no se quitan (un filtro de Bloom no lo permite): esos nombres solo
+ * cuestan la consulta de confirmación.
+ *
+ * la columna compara con utf8mb4_unicode_ci, que Java no reproduce (por ejemplo "ß" es igual a
+ * "ss"). por eso solo se descartan sin consulta los nombres de ASCII imprimible; cualquier otro
+ * va siempre a la base de datos. los nombres registrados que no son ASCII se agregan plegados a
+ * ASCII (sin acentos y con las ligaduras expandidas) para que un nombre ASCII equivalente no dé
+ * un "no está"; ese plegado cubre los casos comunes pero no toda la collation, así que la
+ * respuesta es orientativa y el registro se apoya en las restricciones únicas
+ */
+public final class UserNameFilter {
+    
+    private static final int EXPECTED_NAMES = 1_000_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    
+    private static final UserNameFilter INSTANCE = new UserNameFilter();
+    
+    private final BloomFilter filter = new BloomFilter(EXPECTED_NAMES, FALSE_POSITIVE_RATE);
+    private volatile boolean loaded = false;
+    
+    private final AtomicLong definitelyFree = new AtomicLong();
+    private final AtomicLong maybeTaken = new AtomicLong();
+    
+    private UserNameFilter() {
+    }
+    
+    public static UserNameFilter getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * agrega todos los usuarios existentes leyéndolos en streaming; hasta que termina, mightBeTaken
+     * responde siempre true (se consulta la base de datos)
+     */
+    public int load() throws SQLException {
+        int count = 0;
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT username, email FROM users")) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    add(rs.getString("username"), rs.getString("email"));
+                    count++;
+                }
+            }
+        }
+        loaded = true;
+        return count;
+    }
+    
+    /**
+     * false si el username no está en el filtro; los que no son ASCII imprimible dan siempre true
+     */
+    public boolean mightBeTakenUsername(String username) {
+        return count(!loaded || !isPrintableAscii(username) || filter.mightContain("u:" + normalize(username)));
+    }
+    
+    /**
+     * false si el email no está en el filtro; los que no son ASCII imprimible dan siempre true
+     */
+    public boolean mightBeTakenEmail(String email) {
+        return count(!loaded || !isPrintableAscii(email) || filter.mightContain("e:" + normalize(email)));
+    }
+    
+    /**
+     * el usuario se creó o cambió (llamado por UserDAO tras escribirlo, o al detectar un duplicado)
+     */
+    void add(String username, String email) {
+        if (username != null) {
+            filter.add("u:" + normalize(username));
+        }
+        if (email != null) {
+            filter.add("e:" + normalize(email));
+        }
+    }
+    
+    /**
+     * estado del filtro y cuántas consultas se contestaron sin base de datos (definitelyFree)
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", "userNames");
+        stats.putAll(filter.stats());
+        stats.put("loaded", loaded);
+        stats.put("definitelyFree", definitelyFree.get());
+        stats.put("maybeTaken", maybeTaken.get());
+        return stats;
+    }
+    
+    private boolean count(boolean mightBeTaken) {
+        (mightBeTaken ? maybeTaken : definitelyFree).incrementAndGet();
+        return mightBeTaken;
+    }
+    
+    private static boolean isPrintableAscii(String value) {
+        if (value == null) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * clave del filtro: en ASCII imprimible coincide con la collation (sin mayúsculas ni espacios
+     * finales); el resto se pliega a ASCII como mejor aproximación
+     */
+    private static String normalize(String value) {
+        String stripped = value.stripTrailing().toLowerCase(Locale.ROOT);
+        if (isPrintableAscii(stripped)) {
+            return stripped;
+        }
+        return Normalizer.normalize(stripped, Normalizer.Form.NFKD).replaceAll("\\p{M}", "")
+            .replace("ß", "ss").replace("æ", "ae").replace("œ", "oe").replace("ø", "o")
+            .replace("đ", "d").replace("ł", "l").replace("þ", "th");
+    }
+}
@@ -23,6 +23,7 @@ public class Task {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private LocalDateTime completedAt;
+    private Integer version;
     
     public Task() {
         this.status = TaskStatus.PENDING;
@@ -35,6 +36,27 @@ public class Task {
         this.status = TaskStatus.PENDING;
     }
     
+    /**
+     * copia de otra tarea, con sus propias listas de asignados
+     */
+    public Task(Task other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.description = other.description;
+        this.status = other.status;
+        this.category = other.category;
+        this.createdBy = other.createdBy;
+        this.createdByUsername = other.createdByUsername;
+        this.assignedTo = other.assignedTo;
+        this.assignedUsers = other.assignedUsers != null ? new ArrayList<>(other.assignedUsers) : null;
+        this.assignedUsersNames = other.assignedUsersNames != null ? new ArrayList<>(other.assignedUsersNames) : null;
+        this.dueDate = other.dueDate;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.completedAt = other.completedAt;
+        this.version = other.version;
+    }
+    
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     
@@ -87,6 +109,12 @@ public class Task {
     public LocalDateTime getCompletedAt() { return completedAt; }
     public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
     
+    /**
+     * versión de la fila; aumenta con cada actualización (bloqueo optimista de PATCH)
+     */
+    public Integer getVersion() { return version; }
+    public void setVersion(Integer version) { this.version = version; }
+    
     @Override
     public String toString() {
         return "Task{id=" + id + ", title='" + title + "', status=" + status + "}";
@@ -131,7 +159,8 @@ public class Task {
         sb.append("\"dueDate\":").append(dueDate != null ? "\"" + dueDate.format(formatter) + "\"" : "null").append(",");
         sb.append("\"createdAt\":").append(createdAt != null ? "\"" + createdAt.format(formatter) + "\"" : "null").append(",");
         sb.append("\"updatedAt\":").append(updatedAt != null ? "\"" + updatedAt.format(formatter) + "\"" : "null").append(",");
-        sb.append("\"completedAt\":").append(completedAt != null ? "\"" + completedAt.format(formatter) + "\"" : "null");
+        sb.append("\"completedAt\":").append(completedAt != null ? "\"" + completedAt.format(formatter) + "\"" : "null").append(",");
+        sb.append("\"version\":").append(version != null ? version : "null");
         sb.append("}");
         return sb.toString();
     }
@@ -0,0 +1,110 @@
+package com.kodeotask.model;
+
+/**
+ * una operación de POST /api/tasks/bulk (crear, actualizar o eliminar) y su resultado
+ */
+public class TaskBulkOperation {
+    
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+    
+    private final Type type;
+    private final Long taskId;
+    private final Task task;
+    private final TaskPatch patch;
+    
+    // resultado: código HTTP por operación (0 mientras esté pendiente)
+    private int status;
+    private Task result;
+    private String error;
+    
+    private TaskBulkOperation(Type type, Long taskId, Task task, TaskPatch patch) {
+        this.type = type;
+        this.taskId = taskId;
+        this.task = task;
+        this.patch = patch;
+    }
+    
+    public static TaskBulkOperation create(Task task) {
+        return new TaskBulkOperation(Type.CREATE, null, task, null);
+    }
+    
+    public static TaskBulkOperation update(Long taskId, TaskPatch patch) {
+        return new TaskBulkOperation(Type.UPDATE, taskId, null, patch);
+    }
+    
+    public static TaskBulkOperation delete(Long taskId) {
+        return new TaskBulkOperation(Type.DELETE, taskId, null, null);
+    }
+    
+    /**
+     * operación que no se pudo interpretar; se devuelve con 400 sin tocar la base de datos
+     */
+    public static TaskBulkOperation invalid(Type type, Long taskId, String error) {
+        TaskBulkOperation operation = new TaskBulkOperation(type, taskId, null, null);
+        operation.fail(400, error);
+        return operation;
+    }
+    
+    public Type getType() { return type; }
+    public Long getTaskId() { return taskId; }
+    
+    /**
+     * tarea a crear; solo con CREATE
+     */
+    public Task getTask() { return task; }
+    
+    /**
+     * cambios a aplicar; solo con UPDATE
+     */
+    public TaskPatch getPatch() { return patch; }
+    
+    public boolean isPending() { return status == 0; }
+    public boolean isSucceeded() { return status >= 200 && status < 300; }
+    
+    public int getStatus() { return status; }
+    public Task getResult() { return result; }
+    public String getError() { return error; }
+    
+    public void succeed(int status, Task result) {
+        this.status = status;
+        this.result = result;
+    }
+    
+    public void fail(int status, String error) {
+        this.status = status;
+        this.error = error;
+    }
+    
+    /**
+     * convierte el resultado a JSON; index es la posición de la operación en la petición
+     */
+    public String toJson(int index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"index\":").append(index).append(",");
+        sb.append("\"op\":").append(type != null ? "\"" + type.name().toLowerCase() + "\"" : "null").append(",");
+        if (taskId != null || result != null) {
+            sb.append("\"id\":").append(result != null ? result.getId() : taskId).append(",");
+        }
+        sb.append("\"status\":").append(status);
+        if (result != null) {
+            sb.append(",\"task\":").append(result.toJson());
+        }
+        if (error != null) {
+            sb.append(",\"error\":\"").append(escapeJson(error)).append("\"");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+    
+    private String escapeJson(String value) {
+        return value.replace("\\", "\\\\")
+                   .replace("\"", "\\\"")
+                   .replace("\n", "\\n")
+                   .replace("\r", "\\r")
+                   .replace("\t", "\\t");
+    }
+}
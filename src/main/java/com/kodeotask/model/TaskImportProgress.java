@@ -0,0 +1,116 @@
+package com.kodeotask.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * contadores de una importación de tareas: se actualizan a medida que avanza y se
+ * devuelven como resultado al terminar
+ */
+public class TaskImportProgress {
+    
+    /**
+     * errores por línea que se conservan en detalle; del resto solo se cuentan
+     */
+    private static final int MAX_ERRORS = 100;
+    
+    private final long startNanos = System.nanoTime();
+    private long lines;
+    private long imported;
+    private long committed;
+    private long failed;
+    private int batches;
+    private final List<Long> errorLines = new ArrayList<>();
+    private final List<String> errorMessages = new ArrayList<>();
+    private String abortError;
+    
+    public void lineRead() {
+        lines++;
+    }
+    
+    public void batchInserted(int count) {
+        imported += count;
+        batches++;
+    }
+    
+    /**
+     * las tareas insertadas hasta ahora quedaron confirmadas
+     */
+    public void committed() {
+        committed = imported;
+    }
+    
+    /**
+     * la línea no se importa; el resto de la importación continúa
+     */
+    public void fail(long line, String error) {
+        failed++;
+        if (errorLines.size() < MAX_ERRORS) {
+            errorLines.add(line);
+            errorMessages.add(error);
+        }
+    }
+    
+    /**
+     * la importación se detuvo; solo quedan las tareas ya confirmadas
+     */
+    public void abort(String error) {
+        abortError = error != null ? error : "Error desconocido";
+    }
+    
+    public long getLines() { return lines; }
+    public long getImported() { return imported; }
+    public long getCommitted() { return committed; }
+    public long getFailed() { return failed; }
+    public int getBatches() { return batches; }
+    public boolean isAborted() { return abortError != null; }
+    public String getAbortError() { return abortError; }
+    
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+    
+    /**
+     * tareas insertadas por segundo desde el inicio de la importación
+     */
+    public long getRowsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? imported * 1000 / elapsed : imported;
+    }
+    
+    /**
+     * convierte los contadores a JSON; con includeErrors agrega el detalle de las líneas fallidas
+     */
+    public String toJson(boolean includeErrors) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"lines\":").append(lines);
+        sb.append(",\"imported\":").append(imported);
+        sb.append(",\"committed\":").append(committed);
+        sb.append(",\"failed\":").append(failed);
+        sb.append(",\"batches\":").append(batches);
+        sb.append(",\"elapsedMs\":").append(getElapsedMillis());
+        sb.append(",\"rowsPerSecond\":").append(getRowsPerSecond());
+        if (includeErrors) {
+            sb.append(",\"errors\":[");
+            for (int i = 0; i < errorLines.size(); i++) {
+                if (i > 0) sb.append(",");
+                sb.append("{\"line\":").append(errorLines.get(i));
+                sb.append(",\"error\":\"").append(escapeJson(errorMessages.get(i))).append("\"}");
+            }
+            sb.append("]");
+        }
+        if (abortError != null) {
+            sb.append(",\"error\":\"").append(escapeJson(abortError)).append("\"");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+    
+    private String escapeJson(String value) {
+        return value.replace("\\", "\\\\")
+                   .replace("\"", "\\\"")
+                   .replace("\n", "\\n")
+                   .replace("\r", "\\r")
+                   .replace("\t", "\\t");
+    }
+}
@@ -0,0 +1,34 @@
+package com.kodeotask.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * una línea de una importación NDJSON: la tarea a crear y los usuarios a los que se
+ * asigna por username, que se resuelven a ids antes de insertarla
+ */
+public class TaskImportRecord {
+    
+    private final Task task;
+    private long line;
+    private String assignedToUsername;
+    private List<String> assignedUsernames = new ArrayList<>();
+    
+    public TaskImportRecord(Task task) {
+        this.task = task;
+    }
+    
+    public Task getTask() { return task; }
+    
+    /**
+     * número de línea en el cuerpo (empezando en 1), para informar errores
+     */
+    public long getLine() { return line; }
+    public void setLine(long line) { this.line = line; }
+    
+    public String getAssignedToUsername() { return assignedToUsername; }
+    public void setAssignedToUsername(String assignedToUsername) { this.assignedToUsername = assignedToUsername; }
+    
+    public List<String> getAssignedUsernames() { return assignedUsernames; }
+    public void setAssignedUsernames(List<String> assignedUsernames) { this.assignedUsernames = assignedUsernames; }
+}
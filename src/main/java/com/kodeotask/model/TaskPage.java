@@ -0,0 +1,45 @@
+package com.kodeotask.model;
+
+import java.util.List;
+
+/**
+ * página de tareas con el cursor para pedir la siguiente
+ */
+public class TaskPage {
+    private final List<Task> tasks;
+    private final String nextCursor;
+    private final int limit;
+    
+    public TaskPage(List<Task> tasks, String nextCursor, int limit) {
+        this.tasks = tasks;
+        this.nextCursor = nextCursor;
+        this.limit = limit;
+    }
+    
+    public List<Task> getTasks() { return tasks; }
+    
+    /**
+     * cursor opaco de la siguiente página, o null si esta es la última
+     */
+    public String getNextCursor() { return nextCursor; }
+    
+    public int getLimit() { return limit; }
+    
+    /**
+     * convierte la página a JSON
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"tasks\":[");
+        for (int i = 0; i < tasks.size(); i++) {
+            if (i > 0) sb.append(",");
+            sb.append(tasks.get(i).toJson());
+        }
+        sb.append("],");
+        // el cursor es base64url: no necesita escape
+        sb.append("\"nextCursor\":").append(nextCursor != null ? "\"" + nextCursor + "\"" : "null").append(",");
+        sb.append("\"limit\":").append(limit);
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.kodeotask.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * cambios parciales de una tarea (PATCH): solo se actualizan los campos presentes,
+ * que pueden venir a null para borrarlos (category, assignedTo, dueDate)
+ */
+public class TaskPatch {
+    private String title;
+    private boolean titleSet;
+    private String description;
+    private boolean descriptionSet;
+    private TaskStatus status;
+    private boolean statusSet;
+    private String category;
+    private boolean categorySet;
+    private Long assignedTo;
+    private boolean assignedToSet;
+    private LocalDateTime dueDate;
+    private boolean dueDateSet;
+    private List<Long> assignedUsers;
+    
+    // versión que el cliente leyó; null aplica el cambio sin comprobar conflictos
+    private Integer expectedVersion;
+    
+    public String getTitle() { return title; }
+    public boolean hasTitle() { return titleSet; }
+    public void setTitle(String title) { this.title = title; this.titleSet = true; }
+    
+    public String getDescription() { return description; }
+    public boolean hasDescription() { return descriptionSet; }
+    public void setDescription(String description) { this.description = description; this.descriptionSet = true; }
+    
+    public TaskStatus getStatus() { return status; }
+    public boolean hasStatus() { return statusSet; }
+    public void setStatus(TaskStatus status) { this.status = status; this.statusSet = true; }
+    
+    public String getCategory() { return category; }
+    public boolean hasCategory() { return categorySet; }
+    public void setCategory(String category) { this.category = category; this.categorySet = true; }
+    
+    public Long getAssignedTo() { return assignedTo; }
+    public boolean hasAssignedTo() { return assignedToSet; }
+    public void setAssignedTo(Long assignedTo) { this.assignedTo = assignedTo; this.assignedToSet = true; }
+    
+    public LocalDateTime getDueDate() { return dueDate; }
+    public boolean hasDueDate() { return dueDateSet; }
+    public void setDueDate(LocalDateTime dueDate) { this.dueDate = dueDate; this.dueDateSet = true; }
+    
+    /**
+     * nuevo conjunto completo de usuarios asignados, o null si no cambia
+     */
+    public List<Long> getAssignedUsers() { return assignedUsers; }
+    public void setAssignedUsers(List<Long> assignedUsers) { this.assignedUsers = assignedUsers; }
+    
+    public Integer getExpectedVersion() { return expectedVersion; }
+    public void setExpectedVersion(Integer expectedVersion) { this.expectedVersion = expectedVersion; }
+    
+    /**
+     * true si no trae ningún campo que actualizar
+     */
+    public boolean isEmpty() {
+        return !titleSet && !descriptionSet && !statusSet && !categorySet
+            && !assignedToSet && !dueDateSet && assignedUsers == null;
+    }
+}
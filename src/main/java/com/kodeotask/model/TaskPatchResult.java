@@ -0,0 +1,52 @@
+package com.kodeotask.model;
+
+/**
+ * resultado de aplicar un TaskPatch
+ */
+public class TaskPatchResult {
+    
+    public enum Outcome {
+        UPDATED,
+        NOT_FOUND,
+        FORBIDDEN,
+        CONFLICT
+    }
+    
+    private final Outcome outcome;
+    private final Task task;
+    private final Integer currentVersion;
+    
+    private TaskPatchResult(Outcome outcome, Task task, Integer currentVersion) {
+        this.outcome = outcome;
+        this.task = task;
+        this.currentVersion = currentVersion;
+    }
+    
+    public static TaskPatchResult updated(Task task) {
+        return new TaskPatchResult(Outcome.UPDATED, task, task.getVersion());
+    }
+    
+    public static TaskPatchResult notFound() {
+        return new TaskPatchResult(Outcome.NOT_FOUND, null, null);
+    }
+    
+    public static TaskPatchResult forbidden() {
+        return new TaskPatchResult(Outcome.FORBIDDEN, null, null);
+    }
+    
+    public static TaskPatchResult conflict(int currentVersion) {
+        return new TaskPatchResult(Outcome.CONFLICT, null, currentVersion);
+    }
+    
+    public Outcome getOutcome() { return outcome; }
+    
+    /**
+     * tarea ya actualizada; solo con UPDATED
+     */
+    public Task getTask() { return task; }
+    
+    /**
+     * versión actual de la tarea; con CONFLICT indica la que el cliente debe releer
+     */
+    public Integer getCurrentVersion() { return currentVersion; }
+}
@@ -0,0 +1,70 @@
+package com.kodeotask.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * filtros, orden y posición de página para listar las tareas visibles de un usuario
+ */
+public class TaskQuery {
+    
+    /**
+     * orden del listado: createdAt (más recientes primero) o dueDate (vencimiento más
+     * próximo primero, tareas sin fecha al final)
+     */
+    public enum Sort {
+        CREATED_AT,
+        DUE_DATE
+    }
+    
+    private TaskStatus status;
+    private String category;
+    private LocalDateTime dueBefore;
+    private LocalDateTime dueAfter;
+    private Long createdBy;
+    private boolean assignedToMe;
+    private Sort sort = Sort.CREATED_AT;
+    
+    // clave de la última fila de la página anterior; afterValue null con afterId
+    // definido significa que la última fila no tenía due_date
+    private LocalDateTime afterValue;
+    private Long afterId;
+    private int limit;
+    
+    public TaskStatus getStatus() { return status; }
+    public void setStatus(TaskStatus status) { this.status = status; }
+    
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+    
+    public LocalDateTime getDueBefore() { return dueBefore; }
+    public void setDueBefore(LocalDateTime dueBefore) { this.dueBefore = dueBefore; }
+    
+    public LocalDateTime getDueAfter() { return dueAfter; }
+    public void setDueAfter(LocalDateTime dueAfter) { this.dueAfter = dueAfter; }
+    
+    public Long getCreatedBy() { return createdBy; }
+    public void setCreatedBy(Long createdBy) { this.createdBy = createdBy; }
+    
+    public boolean isAssignedToMe() { return assignedToMe; }
+    public void setAssignedToMe(boolean assignedToMe) { this.assignedToMe = assignedToMe; }
+    
+    public Sort getSort() { return sort; }
+    public void setSort(Sort sort) { this.sort = sort; }
+    
+    public LocalDateTime getAfterValue() { return afterValue; }
+    public Long getAfterId() { return afterId; }
+    
+    /**
+     * continúa después de la fila con ese valor de orden e id
+     */
+    public void setAfter(LocalDateTime afterValue, Long afterId) {
+        this.afterValue = afterValue;
+        this.afterId = afterId;
+    }
+    
+    /**
+     * número máximo de filas; 0 devuelve todas
+     */
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+}
@@ -0,0 +1,154 @@
+package com.kodeotask.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// cuerpo de una peticion que el handler lee a medida que llega del socket, sin acumularlo
+// entero en memoria (rutas con cuerpo en streaming, ver RequestProcessor.recibe_cuerpo_en_streaming).
+// termina tras Content-Length bytes
+abstract class CuerpoEntrante extends InputStream {
+    
+    // bytes que el handler aun no leyo
+    protected long restantes;
+    
+    CuerpoEntrante(long longitud) {
+        this.restantes = longitud;
+    }
+    
+    // si el handler no lo leyo hasta el final, la conexion no puede seguir leyendo peticiones
+    boolean leido_completo() {
+        return restantes == 0;
+    }
+    
+    public int read() throws IOException {
+        byte[] uno = new byte[1];
+        int n = read(uno, 0, 1);
+        return n < 0 ? -1 : uno[0] & 0xFF;
+    }
+    
+    // modo bloqueante: el hilo del handler lee del socket a traves del parser de la conexion,
+    // que se queda con los bytes que lleguen detras del cuerpo (peticiones pipelined)
+    static class Bloqueante extends CuerpoEntrante {
+        private final HttpRequestParser parser;
+        private final InputStream in;
+        
+        Bloqueante(HttpRequestParser parser, InputStream in) {
+            super(parser.cuerpo_restante());
+            this.parser = parser;
+            this.in = in;
+        }
+        
+        public int read(byte[] destino, int desde, int longitud) throws IOException {
+            if (restantes == 0) {
+                return -1;
+            }
+            if (longitud == 0) {
+                return 0;
+            }
+            int n = parser.extraer_cuerpo(destino, desde, longitud);
+            while (n == 0) {
+                ByteBuffer buffer = parser.buffer_lectura();
+                int leidos = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if (leidos < 0) {
+                    throw new EOFException("Conexion cerrada antes de recibir el cuerpo completo");
+                }
+                buffer.position(buffer.position() + leidos);
+                n = parser.extraer_cuerpo(destino, desde, longitud);
+            }
+            restantes -= n;
+            return n;
+        }
+    }
+    
+    // modo nio: el event loop deja en una cola acotada los bloques que recibe y el worker los toma.
+    // con la cola llena el event loop deja de leer del socket, asi un handler lento frena al cliente
+    static class Encolado extends CuerpoEntrante {
+        private static final int max_bloques_en_cola = 8;
+        private static final byte[] abortado = new byte[0];
+        
+        // un hueco extra para que abortar() nunca encuentre la cola llena
+        private final BlockingQueue<byte[]> bloques = new ArrayBlockingQueue<byte[]>(max_bloques_en_cola + 1);
+        private final int timeout_ms;
+        private final Runnable aviso;
+        private volatile IOException error;
+        private boolean abortada = false;
+        
+        private byte[] actual;
+        private int posicion;
+        
+        // aviso se ejecuta en el worker cada vez que toma un bloque, para que el event loop vuelva a leer
+        Encolado(long longitud, int timeout_ms, Runnable aviso) {
+            super(longitud);
+            this.timeout_ms = timeout_ms;
+            this.aviso = aviso;
+        }
+        
+        // hilo del event loop
+        boolean admite_bloques() {
+            return !abortada && bloques.size() < max_bloques_en_cola;
+        }
+        
+        // hilo del event loop; solo se llama si admite_bloques()
+        void agregar(byte[] bloque) {
+            bloques.add(bloque);
+        }
+        
+        // hilo del event loop: la conexion se cerro antes de recibir el cuerpo completo
+        void abortar(IOException causa) {
+            if (abortada) {
+                return;
+            }
+            abortada = true;
+            error = causa;
+            bloques.add(abortado);
+        }
+        
+        public int read(byte[] destino, int desde, int longitud) throws IOException {
+            if (restantes == 0) {
+                return -1;
+            }
+            if (longitud == 0) {
+                return 0;
+            }
+            if (actual == null || posicion == actual.length) {
+                siguiente_bloque();
+            }
+            int n = Math.min(longitud, actual.length - posicion);
+            System.arraycopy(actual, posicion, destino, desde, n);
+            posicion += n;
+            restantes -= n;
+            return n;
+        }
+        
+        public int available() {
+            return actual == null ? 0 : actual.length - posicion;
+        }
+        
+        private void siguiente_bloque() throws IOException {
+            byte[] bloque;
+            try {
+                bloque = bloques.poll(timeout_ms, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lectura del cuerpo interrumpida");
+            }
+            if (bloque == null) {
+                throw new SocketTimeoutException("Tiempo de espera agotado recibiendo el cuerpo");
+            }
+            if (bloque == abortado) {
+                bloques.add(abortado);
+                throw error;
+            }
+            actual = bloque;
+            posicion = 0;
+            aviso.run();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.kodeotask.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+// parser http incremental a nivel de bytes sobre un ByteBuffer reutilizable por conexion.
+// cada byte se examina una sola vez aunque la peticion llegue en varias lecturas parciales;
+// solo se crean Strings para el metodo/ruta y para los valores de los headers que usa el servidor.
+// las peticiones con cuerpo en streaming se devuelven al terminar los headers y su cuerpo se
+// consume despues con extraer_cuerpo, sin acumularlo en el buffer
+public class HttpRequestParser {
+    
+    public static final int max_tamano_headers = 16 * 1024;
+    public static final int max_tamano_cuerpo = 1024 * 1024;
+    public static final int max_tamano_cuerpo_streaming = 1024 * 1024 * 1024;
+    private static final int tamano_inicial = 8192;
+    private static final int tamano_buffer_cuerpo_streaming = 64 * 1024;
+    
+    private static final String[] metodos_conocidos = { "GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS", "HEAD" };
+    
+    // headers que se conservan; el resto se descarta sin crear Strings
+    private static final String[] headers_conocidos = {
+        "content-length", "content-type", "connection", "authorization", "host", "transfer-encoding"
+    };
+    private static final byte[][] headers_conocidos_bytes = new byte[headers_conocidos.length][];
+    static {
+        for (int i = 0; i < headers_conocidos.length; i++) {
+            headers_conocidos_bytes[i] = headers_conocidos[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+    
+    private enum Fase { LINEA_PETICION, HEADERS, CUERPO, CUERPO_STREAMING }
+    
+    // decide, con la linea de peticion y los headers ya leidos, si el cuerpo va en streaming
+    private final Predicate<PeticionHTTP> cuerpo_en_streaming;
+    
+    // datos recibidos en [0, buffer.position()); se mantiene siempre en modo escritura
+    private ByteBuffer buffer = ByteBuffer.allocate(tamano_inicial);
+    
+    private Fase fase = Fase.LINEA_PETICION;
+    private int inicio_peticion = 0;
+    private int inicio_linea = 0;
+    private int escaneado = 0;
+    private int inicio_cuerpo = 0;
+    private int longitud_cuerpo = 0;
+    private int cuerpo_restante = 0;
+    private PeticionHTTP actual;
+    
+    public HttpRequestParser() {
+        this(peticion -> false);
+    }
+    
+    public HttpRequestParser(Predicate<PeticionHTTP> cuerpo_en_streaming) {
+        this.cuerpo_en_streaming = cuerpo_en_streaming;
+    }
+    
+    // error de parseo que se responde con el codigo http indicado y cierra la conexion
+    public static class ErrorParseo extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        final int codigo_estado;
+        final String mensaje_estado;
+        
+        ErrorParseo(int codigo_estado, String mensaje_estado, String detalle) {
+            super(detalle);
+            this.codigo_estado = codigo_estado;
+            this.mensaje_estado = mensaje_estado;
+        }
+    }
+    
+    // devuelve el buffer donde escribir los siguientes bytes leidos del socket,
+    // compactando los ya consumidos y creciendo si la peticion actual lo necesita
+    public ByteBuffer buffer_lectura() {
+        if (inicio_peticion > 0 && (inicio_peticion == buffer.position() || !buffer.hasRemaining())) {
+            compactar();
+        }
+        // un cuerpo en streaming se lee en bloques mas grandes, pero sin crecer despues
+        boolean crecer_para_streaming = fase == Fase.CUERPO_STREAMING && buffer.capacity() < tamano_buffer_cuerpo_streaming;
+        if (!buffer.hasRemaining() || crecer_para_streaming) {
+            int necesario = fase == Fase.CUERPO ? (inicio_cuerpo - inicio_peticion) + longitud_cuerpo
+                : crecer_para_streaming ? tamano_buffer_cuerpo_streaming : buffer.capacity() * 2;
+            ByteBuffer nuevo = ByteBuffer.allocate(crecer_para_streaming ? necesario : Math.max(necesario, buffer.capacity() * 2));
+            buffer.flip();
+            nuevo.put(buffer);
+            buffer = nuevo;
+        }
+        return buffer;
+    }
+    
+    // indica si hay bytes recibidos que aun no forman parte de una peticion devuelta
+    public boolean hay_datos_pendientes() {
+        return buffer.position() > inicio_peticion;
+    }
+    
+    // indica si hay una peticion a medio recibir
+    public boolean en_medio_de_peticion() {
+        return fase != Fase.LINEA_PETICION || buffer.position() > inicio_peticion;
+    }
+    
+    // devuelve la siguiente peticion completa del buffer, o null si faltan bytes; una peticion
+    // con cuerpo en streaming se devuelve sin cuerpo y hasta consumirlo no se devuelven mas
+    public PeticionHTTP siguiente_peticion() {
+        if (leyendo_cuerpo()) {
+            return null;
+        }
+        byte[] datos = buffer.array();
+        int fin = buffer.position();
+        
+        while ((fase == Fase.LINEA_PETICION || fase == Fase.HEADERS) && escaneado < fin) {
+            if (datos[escaneado] != '\n') {
+                escaneado++;
+                if (escaneado - inicio_peticion > max_tamano_headers) {
+                    throw new ErrorParseo(431, "Request Header Fields Too Large", "Headers demasiado grandes");
+                }
+                continue;
+            }
+            
+            int fin_linea = escaneado;
+            if (fin_linea > inicio_linea && datos[fin_linea - 1] == '\r') {
+                fin_linea--;
+            }
+            escaneado++;
+            
+            if (fase == Fase.LINEA_PETICION) {
+                if (fin_linea == inicio_linea) {
+                    // lineas vacias entre peticiones (RFC 7230 3.5)
+                    inicio_peticion = escaneado;
+                    inicio_linea = escaneado;
+                    continue;
+                }
+                actual = new PeticionHTTP();
+                parsear_linea_peticion(datos, inicio_linea, fin_linea);
+                fase = Fase.HEADERS;
+            } else if (fin_linea == inicio_linea) {
+                iniciar_cuerpo();
+            } else {
+                parsear_header(datos, inicio_linea, fin_linea);
+            }
+            inicio_linea = escaneado;
+        }
+        
+        if (fase == Fase.CUERPO_STREAMING) {
+            PeticionHTTP peticion = actual;
+            actual = null;
+            inicio_peticion = inicio_cuerpo;
+            return peticion;
+        }
+        
+        if (fase != Fase.CUERPO || fin - inicio_cuerpo < longitud_cuerpo) {
+            return null;
+        }
+        
+        if (longitud_cuerpo > 0) {
+            actual.cuerpo = new String(datos, inicio_cuerpo, longitud_cuerpo, StandardCharsets.UTF_8);
+        }
+        
+        PeticionHTTP completa = actual;
+        actual = null;
+        fase = Fase.LINEA_PETICION;
+        inicio_peticion = inicio_cuerpo + longitud_cuerpo;
+        inicio_linea = inicio_peticion;
+        escaneado = inicio_peticion;
+        return completa;
+    }
+    
+    private void iniciar_cuerpo() {
+        if (actual.headers.containsKey("transfer-encoding")) {
+            throw new ErrorParseo(501, "Not Implemented", "Transfer-Encoding no soportado en peticiones");
+        }
+        inicio_cuerpo = escaneado;
+        
+        if (longitud_cuerpo > 0 && cuerpo_en_streaming.test(actual)) {
+            if (longitud_cuerpo > max_tamano_cuerpo_streaming) {
+                throw new ErrorParseo(413, "Payload Too Large", "Cuerpo demasiado grande");
+            }
+            fase = Fase.CUERPO_STREAMING;
+            cuerpo_restante = longitud_cuerpo;
+            return;
+        }
+        
+        if (longitud_cuerpo > max_tamano_cuerpo) {
+            throw new ErrorParseo(413, "Payload Too Large", "Cuerpo demasiado grande");
+        }
+        fase = Fase.CUERPO;
+    }
+    
+    // indica si la ultima peticion devuelta tiene un cuerpo en streaming sin consumir del todo
+    public boolean leyendo_cuerpo() {
+        return fase == Fase.CUERPO_STREAMING && actual == null;
+    }
+    
+    // bytes del cuerpo en streaming que aun no se recibieron o no se extrajeron
+    public int cuerpo_restante() {
+        return leyendo_cuerpo() ? cuerpo_restante : 0;
+    }
+    
+    // bytes del cuerpo en streaming ya recibidos que pueden extraerse sin leer del socket
+    public int cuerpo_disponible() {
+        return leyendo_cuerpo() ? Math.min(buffer.position() - inicio_peticion, cuerpo_restante) : 0;
+    }
+    
+    // copia en destino hasta longitud bytes ya recibidos del cuerpo en streaming y devuelve cuantos
+    // copio; al consumir el ultimo byte el parser vuelve a esperar la siguiente peticion
+    public int extraer_cuerpo(byte[] destino, int desde, int longitud) {
+        int n = Math.min(longitud, cuerpo_disponible());
+        System.arraycopy(buffer.array(), inicio_peticion, destino, desde, n);
+        inicio_peticion += n;
+        cuerpo_restante -= n;
+        if (leyendo_cuerpo() && cuerpo_restante == 0) {
+            fase = Fase.LINEA_PETICION;
+            inicio_linea = inicio_peticion;
+            escaneado = inicio_peticion;
+        }
+        return n;
+    }
+    
+    // METODO SP RUTA SP VERSION
+    private void parsear_linea_peticion(byte[] datos, int desde, int hasta) {
+        int espacio_1 = indice_de(datos, desde, hasta, (byte) ' ');
+        int espacio_2 = espacio_1 < 0 ? -1 : indice_de(datos, espacio_1 + 1, hasta, (byte) ' ');
+        if (espacio_1 <= desde || espacio_2 < 0 || espacio_2 == espacio_1 + 1) {
+            throw new ErrorParseo(400, "Bad Request", "Linea de peticion invalida");
+        }
+        
+        actual.metodo = metodo_de(datos, desde, espacio_1);
+        actual.ruta = new String(datos, espacio_1 + 1, espacio_2 - espacio_1 - 1, StandardCharsets.UTF_8);
+        
+        int longitud_version = hasta - espacio_2 - 1;
+        if (longitud_version == 8 && coincide(datos, espacio_2 + 1, "HTTP/1.0")) {
+            actual.version = "HTTP/1.0";
+        } else {
+            actual.version = "HTTP/1.1";
+        }
+        longitud_cuerpo = 0;
+    }
+    
+    // NOMBRE ":" OWS VALOR OWS
+    private void parsear_header(byte[] datos, int desde, int hasta) {
+        int dos_puntos = indice_de(datos, desde, hasta, (byte) ':');
+        if (dos_puntos <= desde) {
+            return;
+        }
+        
+        // RFC 9112 5.1: un espacio entre el nombre y los dos puntos se rechaza, porque otro
+        // servidor de la cadena podria leer ese header de otra forma
+        if (datos[dos_puntos - 1] == ' ' || datos[dos_puntos - 1] == '\t') {
+            throw new ErrorParseo(400, "Bad Request", "Espacio antes de ':' en un header");
+        }
+        
+        String nombre = header_conocido(datos, desde, dos_puntos);
+        if (nombre == null) {
+            return;
+        }
+        
+        int inicio_valor = dos_puntos + 1;
+        int fin_valor = hasta;
+        while (inicio_valor < fin_valor && (datos[inicio_valor] == ' ' || datos[inicio_valor] == '\t')) {
+            inicio_valor++;
+        }
+        while (fin_valor > inicio_valor && (datos[fin_valor - 1] == ' ' || datos[fin_valor - 1] == '\t')) {
+            fin_valor--;
+        }
+        
+        if ("content-length".equals(nombre)) {
+            // RFC 9112 6.3: un segundo Content-Length no puede sustituir al primero; en una
+            // conexion persistente eso permitiria colar una peticion dentro del cuerpo
+            if (actual.headers.containsKey(nombre)) {
+                throw new ErrorParseo(400, "Bad Request", "Content-Length duplicado");
+            }
+            longitud_cuerpo = parsear_longitud(datos, inicio_valor, fin_valor);
+        }
+        actual.headers.put(nombre, new String(datos, inicio_valor, fin_valor - inicio_valor, StandardCharsets.ISO_8859_1));
+    }
+    
+    private static int parsear_longitud(byte[] datos, int desde, int hasta) {
+        if (desde == hasta) {
+            throw new ErrorParseo(400, "Bad Request", "Content-Length invalido");
+        }
+        long valor = 0;
+        for (int i = desde; i < hasta; i++) {
+            int digito = datos[i] - '0';
+            if (digito < 0 || digito > 9) {
+                throw new ErrorParseo(400, "Bad Request", "Content-Length invalido");
+            }
+            valor = valor * 10 + digito;
+            if (valor > Integer.MAX_VALUE) {
+                throw new ErrorParseo(413, "Payload Too Large", "Cuerpo demasiado grande");
+            }
+        }
+        return (int) valor;
+    }
+    
+    private static String metodo_de(byte[] datos, int desde, int hasta) {
+        for (String metodo : metodos_conocidos) {
+            if (metodo.length() == hasta - desde && coincide(datos, desde, metodo)) {
+                return metodo;
+            }
+        }
+        return new String(datos, desde, hasta - desde, StandardCharsets.ISO_8859_1);
+    }
+    
+    // compara el nombre sin distinguir mayusculas y devuelve la constante correspondiente; solo
+    // las letras se comparan con | 0x20, el resto tiene que ser igual (si no, CR valdria como '-')
+    private static String header_conocido(byte[] datos, int desde, int hasta) {
+        int longitud = hasta - desde;
+        for (int i = 0; i < headers_conocidos_bytes.length; i++) {
+            byte[] nombre = headers_conocidos_bytes[i];
+            if (nombre.length != longitud) {
+                continue;
+            }
+            int j = 0;
+            while (j < longitud && mismo_caracter(datos[desde + j], nombre[j])) {
+                j++;
+            }
+            if (j == longitud) {
+                return headers_conocidos[i];
+            }
+        }
+        return null;
+    }
+    
+    // esperado esta en minusculas
+    private static boolean mismo_caracter(byte recibido, byte esperado) {
+        if (esperado >= 'a' && esperado <= 'z') {
+            return (recibido | 0x20) == esperado;
+        }
+        return recibido == esperado;
+    }
+    
+    private static boolean coincide(byte[] datos, int desde, String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (datos[desde + i] != texto.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int indice_de(byte[] datos, int desde, int hasta, byte valor) {
+        for (int i = desde; i < hasta; i++) {
+            if (datos[i] == valor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    // mueve al inicio del buffer los bytes aun no consumidos
+    private void compactar() {
+        int desplazamiento = inicio_peticion;
+        buffer.flip();
+        buffer.position(desplazamiento);
+        buffer.compact();
+        
+        inicio_peticion = 0;
+        inicio_linea -= desplazamiento;
+        escaneado -= desplazamiento;
+        inicio_cuerpo = Math.max(0, inicio_cuerpo - desplazamiento);
+        
+        // tras atender rafagas grandes se vuelve al tamano inicial
+        if (fase != Fase.CUERPO_STREAMING && buffer.capacity() > tamano_inicial && buffer.position() < tamano_inicial) {
+            ByteBuffer nuevo = ByteBuffer.allocate(tamano_inicial);
+            buffer.flip();
+            nuevo.put(buffer);
+            buffer = nuevo;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.kodeotask.server;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// construye respuestas http a partir de bloques pre-codificados: las lineas de estado
+// y los headers constantes (json/cors) se codifican una vez, y el cuerpo se codifica
+// en utf-8 una sola vez sobre un buffer reutilizable del pool
+public class HttpResponseWriter {
+    
+    private static final int tamano_buffer_pool = 64 * 1024;
+    private static final int max_buffers_pool = 64;
+    
+    static final byte[] headers_cors = ascii(
+        "Access-Control-Allow-Origin: *\r\n" +
+        "Access-Control-Allow-Methods: GET, POST, PUT, PATCH, DELETE, OPTIONS\r\n" +
+        "Access-Control-Allow-Headers: Content-Type, Authorization\r\n");
+    
+    static final byte[] headers_json = ascii(
+        "Content-Type: application/json; charset=utf-8\r\n" +
+        "Access-Control-Allow-Origin: *\r\n" +
+        "Access-Control-Allow-Methods: GET, POST, PUT, PATCH, DELETE, OPTIONS\r\n" +
+        "Access-Control-Allow-Headers: Content-Type, Authorization\r\n");
+    
+    static final byte[] headers_ndjson = ascii(
+        "Content-Type: application/x-ndjson; charset=utf-8\r\n" +
+        "Access-Control-Allow-Origin: *\r\n" +
+        "Access-Control-Allow-Methods: GET, POST, PUT, PATCH, DELETE, OPTIONS\r\n" +
+        "Access-Control-Allow-Headers: Content-Type, Authorization\r\n");
+    
+    static final byte[] headers_csv = ascii(
+        "Content-Type: text/csv; charset=utf-8\r\n" +
+        "Content-Disposition: attachment; filename=\"tasks.csv\"\r\n" +
+        "Access-Control-Allow-Origin: *\r\n" +
+        "Access-Control-Allow-Methods: GET, POST, PUT, PATCH, DELETE, OPTIONS\r\n" +
+        "Access-Control-Allow-Headers: Content-Type, Authorization\r\n");
+    
+    private static final byte[] content_length = ascii("Content-Length: ");
+    private static final byte[] transfer_encoding_chunked = ascii("Transfer-Encoding: chunked");
+    private static final byte[] keep_alive = ascii("\r\nConnection: keep-alive\r\nKeep-Alive: timeout=");
+    private static final byte[] keep_alive_max = ascii(", max=");
+    private static final byte[] connection_close = ascii("\r\nConnection: close");
+    private static final byte[] fin_headers = ascii("\r\n\r\n");
+    private static final ByteBuffer cuerpo_vacio = ByteBuffer.allocate(0);
+    
+    // lineas de estado ya codificadas, indexadas por codigo
+    private static final ConcurrentHashMap<Integer, byte[]> lineas_estado = new ConcurrentHashMap<Integer, byte[]>();
+    
+    private static final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+    private static final AtomicInteger buffers_en_pool = new AtomicInteger();
+    
+    private static final ThreadLocal<CharsetEncoder> codificador = new ThreadLocal<CharsetEncoder>() {
+        protected CharsetEncoder initialValue() {
+            return StandardCharsets.UTF_8.newEncoder();
+        }
+    };
+    
+    // crea la respuesta; el cuerpo se codifica aqui y no se vuelve a tocar
+    static RespuestaHTTP crear(int codigo_estado, String mensaje_estado, byte[] headers, String cuerpo) {
+        byte[] linea_estado = linea_estado(codigo_estado, mensaje_estado);
+        
+        if (cuerpo == null || cuerpo.isEmpty()) {
+            return new RespuestaHTTP(codigo_estado, linea_estado, headers, cuerpo_vacio.duplicate(), false);
+        }
+        
+        // utf-8 usa como mucho 3 bytes por char (los pares sustitutos ocupan 2 chars y 4 bytes)
+        if (cuerpo.length() * 3 <= tamano_buffer_pool) {
+            ByteBuffer buffer = tomar_buffer();
+            CharsetEncoder encoder = codificador.get().reset();
+            CoderResult resultado = encoder.encode(CharBuffer.wrap(cuerpo), buffer, true);
+            if (!resultado.isError()) {
+                encoder.flush(buffer);
+                buffer.flip();
+                return new RespuestaHTTP(codigo_estado, linea_estado, headers, buffer, true);
+            }
+            devolver_buffer(buffer);
+        }
+        
+        // cuerpos grandes (o con caracteres no codificables) van en un array propio
+        return new RespuestaHTTP(codigo_estado, linea_estado, headers,
+            ByteBuffer.wrap(cuerpo.getBytes(StandardCharsets.UTF_8)), false);
+    }
+    
+    // crea la respuesta con un cuerpo ya codificado en utf-8 (p. ej. json de tareas cacheado); el array
+    // no se copia: puede ser compartido, solo se lee
+    static RespuestaHTTP crear(int codigo_estado, String mensaje_estado, byte[] headers, byte[] cuerpo) {
+        return new RespuestaHTTP(codigo_estado, linea_estado(codigo_estado, mensaje_estado), headers,
+            ByteBuffer.wrap(cuerpo), false);
+    }
+    
+    // crea una respuesta cuyo cuerpo escribe el generador mientras se envia (chunked)
+    static RespuestaHTTP crear_streaming(int codigo_estado, String mensaje_estado, byte[] headers,
+                                         RespuestaStreaming.Generador generador) {
+        return new RespuestaStreaming(codigo_estado, linea_estado(codigo_estado, mensaje_estado), headers, generador);
+    }
+    
+    private static byte[] linea_estado(int codigo_estado, String mensaje_estado) {
+        byte[] linea = lineas_estado.get(codigo_estado);
+        if (linea == null) {
+            linea = ascii("HTTP/1.1 " + codigo_estado + " " + mensaje_estado + "\r\n");
+            lineas_estado.putIfAbsent(codigo_estado, linea);
+        }
+        return linea;
+    }
+    
+    // Content-Length y headers de conexion que cierran el bloque de headers
+    static ByteBuffer headers_finales(int longitud_cuerpo, boolean mantener_conexion, int timeout_s, int peticiones_restantes) {
+        byte[] destino = new byte[128];
+        int n = copiar(content_length, destino, 0);
+        n = escribir_entero(longitud_cuerpo, destino, n);
+        return cerrar_headers(destino, n, mantener_conexion, timeout_s, peticiones_restantes);
+    }
+    
+    // Transfer-Encoding: chunked y headers de conexion, para cuerpos de longitud desconocida
+    static ByteBuffer headers_finales_chunked(boolean mantener_conexion, int timeout_s, int peticiones_restantes) {
+        byte[] destino = new byte[128];
+        int n = copiar(transfer_encoding_chunked, destino, 0);
+        return cerrar_headers(destino, n, mantener_conexion, timeout_s, peticiones_restantes);
+    }
+    
+    private static ByteBuffer cerrar_headers(byte[] destino, int n, boolean mantener_conexion, int timeout_s, int peticiones_restantes) {
+        if (mantener_conexion) {
+            n = copiar(keep_alive, destino, n);
+            n = escribir_entero(timeout_s, destino, n);
+            n = copiar(keep_alive_max, destino, n);
+            n = escribir_entero(Math.max(0, peticiones_restantes), destino, n);
+        } else {
+            n = copiar(connection_close, destino, n);
+        }
+        n = copiar(fin_headers, destino, n);
+        return ByteBuffer.wrap(destino, 0, n);
+    }
+    
+    private static ByteBuffer tomar_buffer() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(tamano_buffer_pool);
+        }
+        buffers_en_pool.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+    
+    static void devolver_buffer(ByteBuffer buffer) {
+        if (buffer.capacity() != tamano_buffer_pool || buffers_en_pool.get() >= max_buffers_pool) {
+            return;
+        }
+        buffers_en_pool.incrementAndGet();
+        pool.offer(buffer);
+    }
+    
+    private static int copiar(byte[] origen, byte[] destino, int posicion) {
+        System.arraycopy(origen, 0, destino, posicion, origen.length);
+        return posicion + origen.length;
+    }
+    
+    // escribe un entero no negativo en ascii sin crear Strings
+    private static int escribir_entero(int valor, byte[] destino, int posicion) {
+        int digitos = 1;
+        for (int resto = valor / 10; resto > 0; resto /= 10) {
+            digitos++;
+        }
+        for (int i = posicion + digitos - 1; i >= posicion; i--) {
+            destino[i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        return posicion + digitos;
+    }
+    
+    private static byte[] ascii(String texto) {
+        return texto.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,455 @@
+package com.kodeotask.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+// hilo de i/o no bloqueante: lee y parsea peticiones de varias conexiones con un selector
+// y solo envia al pool de workers el trabajo bloqueante de servicios/dao
+public class NioEventLoop implements Runnable {
+    
+    private static final int max_peticiones_en_vuelo = 16;
+    
+    private final String nombre;
+    private final Selector selector;
+    private final RequestProcessor procesador;
+    private final ExecutorService pool_workers;
+    private final int timeout_inactividad_ms;
+    private final int max_peticiones;
+    private long ultima_revision_inactivas = System.currentTimeMillis();
+    
+    // tareas que otros hilos (acceptor, workers) piden ejecutar en este hilo
+    private final Queue<Runnable> tareas_pendientes = new ConcurrentLinkedQueue<Runnable>();
+    private volatile boolean ejecutando = true;
+    
+    public NioEventLoop(String nombre, RequestProcessor procesador, ExecutorService pool_workers) throws IOException {
+        this(nombre, procesador, pool_workers,
+            RequestProcessor.timeout_keep_alive_ms, RequestProcessor.max_peticiones_por_conexion);
+    }
+    
+    public NioEventLoop(String nombre, RequestProcessor procesador, ExecutorService pool_workers,
+                        int timeout_inactividad_ms, int max_peticiones) throws IOException {
+        this.nombre = nombre;
+        this.selector = Selector.open();
+        this.procesador = procesador;
+        this.pool_workers = pool_workers;
+        this.timeout_inactividad_ms = timeout_inactividad_ms;
+        this.max_peticiones = max_peticiones;
+    }
+    
+    // registra un canal aceptado en este event loop
+    public void registrar(SocketChannel canal) {
+        tareas_pendientes.add(new Runnable() {
+            public void run() {
+                try {
+                    canal.configureBlocking(false);
+                    canal.register(selector, SelectionKey.OP_READ,
+                        new ConexionNio(canal, new HttpRequestParser(procesador::recibe_cuerpo_en_streaming)));
+                } catch (IOException e) {
+                    System.err.println("[NIO] Error al registrar canal: " + e.getMessage());
+                    cerrar_canal(canal);
+                }
+            }
+        });
+        selector.wakeup();
+    }
+    
+    public void run() {
+        while (ejecutando) {
+            try {
+                selector.select(1000);
+                ejecutar_tareas_pendientes();
+                cerrar_inactivas();
+                
+                Iterator<SelectionKey> claves = selector.selectedKeys().iterator();
+                while (claves.hasNext()) {
+                    SelectionKey clave = claves.next();
+                    claves.remove();
+                    
+                    if (!clave.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (clave.isReadable()) {
+                            leer(clave);
+                        }
+                        if (clave.isValid() && clave.isWritable()) {
+                            escribir(clave);
+                        }
+                    } catch (IOException e) {
+                        cerrar(clave);
+                    }
+                }
+            } catch (IOException e) {
+                if (ejecutando) {
+                    System.err.println("[NIO] Error en " + nombre + ": " + e.getMessage());
+                }
+            }
+        }
+        
+        for (SelectionKey clave : selector.keys()) {
+            cerrar(clave);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+        }
+    }
+    
+    private void ejecutar_tareas_pendientes() {
+        Runnable tarea;
+        while ((tarea = tareas_pendientes.poll()) != null) {
+            tarea.run();
+        }
+    }
+    
+    // cierra las conexiones keep-alive sin peticiones en curso que llevan mas de timeout_inactividad_ms inactivas
+    private void cerrar_inactivas() {
+        long ahora = System.currentTimeMillis();
+        if (ahora - ultima_revision_inactivas < 1000) {
+            return;
+        }
+        ultima_revision_inactivas = ahora;
+        
+        for (SelectionKey clave : selector.keys()) {
+            if (!clave.isValid()) {
+                continue;
+            }
+            ConexionNio conexion = (ConexionNio) clave.attachment();
+            if (conexion.en_vuelo == 0 && ahora - conexion.ultima_actividad > timeout_inactividad_ms) {
+                cerrar(clave);
+            }
+        }
+    }
+    
+    // lee bytes disponibles y procesa la peticion si ya esta completa
+    private void leer(SelectionKey clave) throws IOException {
+        ConexionNio conexion = (ConexionNio) clave.attachment();
+        int leidos = conexion.canal.read(conexion.parser.buffer_lectura());
+        
+        if (leidos < 0) {
+            // el cliente cerro su lado: se atienden las peticiones ya recibidas y luego se cierra
+            if (conexion.cuerpo_entrante != null && conexion.parser.cuerpo_disponible() < conexion.parser.cuerpo_restante()) {
+                conexion.cuerpo_entrante.abortar(new EOFException("Conexion cerrada antes de recibir el cuerpo completo"));
+                conexion.cuerpo_entrante = null;
+            }
+            procesar_entrada(clave);
+            conexion.cerrando = true;
+            if (conexion.en_vuelo == 0) {
+                cerrar(clave);
+            } else {
+                actualizar_interes(clave);
+            }
+            return;
+        }
+        conexion.ultima_actividad = System.currentTimeMillis();
+        
+        alimentar_cuerpo(conexion);
+        procesar_entrada(clave);
+    }
+    
+    // pasa al cuerpo en streaming de la peticion actual los bytes ya recibidos, mientras quepan
+    // en su cola; al completarse el cuerpo el parser sigue con las peticiones siguientes
+    private void alimentar_cuerpo(ConexionNio conexion) {
+        while (conexion.cuerpo_entrante != null && conexion.cuerpo_entrante.admite_bloques()) {
+            int disponibles = conexion.parser.cuerpo_disponible();
+            if (disponibles == 0) {
+                break;
+            }
+            byte[] bloque = new byte[disponibles];
+            conexion.parser.extraer_cuerpo(bloque, 0, disponibles);
+            conexion.cuerpo_entrante.agregar(bloque);
+            if (!conexion.parser.leyendo_cuerpo()) {
+                conexion.cuerpo_entrante = null;
+            }
+        }
+    }
+    
+    // la peticion recien parseada tiene el cuerpo en streaming: el worker lo leera de una cola que
+    // el event loop va llenando; cada bloque que el worker toma deja sitio para seguir leyendo
+    private void recibir_cuerpo_en_streaming(SelectionKey clave, PeticionHTTP peticion) {
+        ConexionNio conexion = (ConexionNio) clave.attachment();
+        CuerpoEntrante.Encolado cuerpo = new CuerpoEntrante.Encolado(conexion.parser.cuerpo_restante(),
+            timeout_inactividad_ms, new Runnable() {
+                public void run() {
+                    tareas_pendientes.add(new Runnable() {
+                        public void run() {
+                            if (clave.isValid()) {
+                                alimentar_cuerpo(conexion);
+                                procesar_entrada(clave);
+                            }
+                        }
+                    });
+                    selector.wakeup();
+                }
+            });
+        peticion.cuerpo_entrante = cuerpo;
+        conexion.cuerpo_entrante = cuerpo;
+        alimentar_cuerpo(conexion);
+    }
+    
+    // el handler respondio sin leer todo el cuerpo: el resto no se lee y la conexion se cierra tras responder
+    private void descartar_cuerpo(SelectionKey clave) {
+        if (!clave.isValid()) {
+            return;
+        }
+        ConexionNio conexion = (ConexionNio) clave.attachment();
+        conexion.cuerpo_entrante = null;
+        conexion.cerrando = true;
+    }
+    
+    // despacha a los workers todas las peticiones completas del buffer (pipelining),
+    // hasta max_peticiones_en_vuelo por conexion; cada una recibe un numero de secuencia
+    // para escribir las respuestas en el mismo orden en que llegaron las peticiones
+    private void procesar_entrada(SelectionKey clave) {
+        ConexionNio conexion = (ConexionNio) clave.attachment();
+        
+        while (!conexion.cerrando && conexion.en_vuelo < max_peticiones_en_vuelo) {
+            PeticionHTTP peticion = conexion.retenida;
+            conexion.retenida = null;
+            try {
+                if (peticion == null) {
+                    peticion = conexion.parser.siguiente_peticion();
+                    if (peticion != null && conexion.parser.leyendo_cuerpo()) {
+                        recibir_cuerpo_en_streaming(clave, peticion);
+                    }
+                }
+            } catch (HttpRequestParser.ErrorParseo e) {
+                conexion.cerrando = true;
+                long secuencia = conexion.siguiente_secuencia++;
+                conexion.en_vuelo++;
+                conexion.procesando++;
+                completar(clave, secuencia, procesador.respuesta_error_conexion(e.codigo_estado, e.mensaje_estado, e.getMessage()));
+                return;
+            }
+            
+            if (peticion == null) {
+                break;
+            }
+            
+            // las peticiones que modifican datos no se ejecutan en paralelo con otras de la
+            // misma conexion, para que su efecto respete el orden en que fueron enviadas
+            boolean idempotente = es_idempotente(peticion.metodo);
+            if (conexion.exclusiva_en_proceso || (!idempotente && conexion.procesando > 0)) {
+                conexion.retenida = peticion;
+                break;
+            }
+            
+            conexion.atendidas++;
+            boolean mantener_conexion = peticion.quiere_keep_alive() && conexion.atendidas < max_peticiones;
+            int restantes = max_peticiones - conexion.atendidas;
+            long secuencia = conexion.siguiente_secuencia++;
+            conexion.en_vuelo++;
+            conexion.procesando++;
+            conexion.exclusiva_en_proceso = !idempotente;
+            if (!mantener_conexion) {
+                // las peticiones que lleguen despues de un "Connection: close" se descartan
+                conexion.cerrando = true;
+            }
+            System.out.println("[TCP] " + peticion.metodo + " " + peticion.ruta);
+            
+            PeticionHTTP peticion_actual = peticion;
+            try {
+                pool_workers.execute(new Runnable() {
+                    public void run() {
+                        RespuestaHTTP procesada = procesador.procesar_peticion(peticion_actual);
+                        boolean cuerpo_sin_leer = peticion_actual.cuerpo_entrante != null
+                            && !peticion_actual.cuerpo_entrante.leido_completo();
+                        RespuestaHTTP respuesta = procesada.con_conexion(mantener_conexion && !cuerpo_sin_leer,
+                            timeout_inactividad_ms, restantes);
+                        tareas_pendientes.add(new Runnable() {
+                            public void run() {
+                                if (cuerpo_sin_leer) {
+                                    descartar_cuerpo(clave);
+                                }
+                                completar(clave, secuencia, respuesta);
+                            }
+                        });
+                        selector.wakeup();
+                        
+                        // un cuerpo en streaming se sigue generando en este worker; cada bloque
+                        // nuevo vuelve a activar la escritura en el event loop
+                        respuesta.producir(new Runnable() {
+                            public void run() {
+                                tareas_pendientes.add(new Runnable() {
+                                    public void run() {
+                                        actualizar_interes(clave);
+                                    }
+                                });
+                                selector.wakeup();
+                            }
+                        });
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                conexion.cerrando = true;
+                completar(clave, secuencia, procesador.respuesta_error_conexion(503, "Service Unavailable", "Servidor ocupado"));
+            }
+        }
+        
+        actualizar_interes(clave);
+    }
+    
+    // registra la respuesta de la peticion con esa secuencia y pasa a la cola de salida
+    // todas las que ya pueden enviarse en orden; se ejecuta en el hilo del event loop
+    private void completar(SelectionKey clave, long secuencia, RespuestaHTTP respuesta) {
+        if (!clave.isValid()) {
+            respuesta.liberar();
+            return;
+        }
+        ConexionNio conexion = (ConexionNio) clave.attachment();
+        conexion.respuestas_listas.put(secuencia, respuesta);
+        conexion.procesando--;
+        conexion.exclusiva_en_proceso = false;
+        
+        RespuestaHTTP siguiente;
+        while ((siguiente = conexion.respuestas_listas.remove(conexion.siguiente_a_escribir)) != null) {
+            conexion.cola_salida.add(siguiente);
+            conexion.siguiente_a_escribir++;
+        }
+        
+        if (conexion.retenida != null) {
+            procesar_entrada(clave);
+        } else {
+            actualizar_interes(clave);
+        }
+    }
+    
+    private static boolean es_idempotente(String metodo) {
+        return "GET".equals(metodo) || "HEAD".equals(metodo) || "OPTIONS".equals(metodo);
+    }
+    
+    // se lee mientras quede hueco en el pipeline y se escribe mientras haya respuestas en cola
+    private void actualizar_interes(SelectionKey clave) {
+        if (!clave.isValid()) {
+            return;
+        }
+        ConexionNio conexion = (ConexionNio) clave.attachment();
+        int operaciones = 0;
+        if (!conexion.cola_salida.isEmpty() && conexion.cola_salida.peek().lista_para_escribir()) {
+            operaciones |= SelectionKey.OP_WRITE;
+        }
+        if (conexion.cuerpo_entrante != null) {
+            // recibiendo un cuerpo en streaming: se lee mientras quepa en su cola
+            if (conexion.cuerpo_entrante.admite_bloques()) {
+                operaciones |= SelectionKey.OP_READ;
+            }
+        } else if (!conexion.cerrando && conexion.retenida == null && conexion.en_vuelo < max_peticiones_en_vuelo) {
+            operaciones |= SelectionKey.OP_READ;
+        }
+        clave.interestOps(operaciones);
+    }
+    
+    // escribe de una vez (gathering write) headers y cuerpo de todas las respuestas en cola;
+    // una respuesta en streaming sin terminar es la ultima que entra en la escritura
+    private void escribir(SelectionKey clave) throws IOException {
+        ConexionNio conexion = (ConexionNio) clave.attachment();
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        for (RespuestaHTTP respuesta : conexion.cola_salida) {
+            if (!respuesta.agregar_partes(buffers)) {
+                break;
+            }
+        }
+        conexion.canal.write(buffers.toArray(new ByteBuffer[0]));
+        
+        while (!conexion.cola_salida.isEmpty() && conexion.cola_salida.peek().escrita()) {
+            RespuestaHTTP escrita = conexion.cola_salida.poll();
+            escrita.liberar();
+            conexion.en_vuelo--;
+            if (escrita.cierra_conexion()) {
+                cerrar(clave);
+                return;
+            }
+        }
+        
+        if (!conexion.cola_salida.isEmpty()) {
+            // streaming esperando mas bloques del worker: sin OP_WRITE hasta el siguiente aviso
+            actualizar_interes(clave);
+            return;
+        }
+        
+        if (conexion.cerrando && conexion.en_vuelo == 0) {
+            cerrar(clave);
+            return;
+        }
+        
+        // con hueco en el pipeline se procesan de inmediato los bytes que ya hubieran llegado
+        conexion.ultima_actividad = System.currentTimeMillis();
+        procesar_entrada(clave);
+    }
+    
+    private void cerrar(SelectionKey clave) {
+        clave.cancel();
+        cerrar_canal((SocketChannel) clave.channel());
+        
+        // las respuestas sin enviar se liberan (y las que estan en streaming dejan de generarse)
+        ConexionNio conexion = (ConexionNio) clave.attachment();
+        if (conexion != null) {
+            if (conexion.cuerpo_entrante != null) {
+                conexion.cuerpo_entrante.abortar(new EOFException("Conexion cerrada antes de recibir el cuerpo completo"));
+                conexion.cuerpo_entrante = null;
+            }
+            for (RespuestaHTTP respuesta : conexion.cola_salida) {
+                respuesta.liberar();
+            }
+            for (RespuestaHTTP respuesta : conexion.respuestas_listas.values()) {
+                respuesta.liberar();
+            }
+            conexion.cola_salida.clear();
+            conexion.respuestas_listas.clear();
+        }
+    }
+    
+    private void cerrar_canal(SocketChannel canal) {
+        try {
+            canal.close();
+        } catch (IOException e) {
+        }
+    }
+    
+    // detiene el event loop y cierra sus conexiones
+    public void stop() {
+        ejecutando = false;
+        selector.wakeup();
+    }
+    
+    // estado de lectura/escritura de una conexion
+    private static class ConexionNio {
+        final SocketChannel canal;
+        final HttpRequestParser parser;
+        int atendidas = 0;
+        boolean cerrando = false;
+        long ultima_actividad = System.currentTimeMillis();
+        
+        // pipelining: peticiones despachadas sin respuesta escrita todavia
+        int en_vuelo = 0;
+        int procesando = 0;
+        boolean exclusiva_en_proceso = false;
+        PeticionHTTP retenida;
+        long siguiente_secuencia = 0;
+        long siguiente_a_escribir = 0;
+        final Map<Long, RespuestaHTTP> respuestas_listas = new HashMap<Long, RespuestaHTTP>();
+        final Queue<RespuestaHTTP> cola_salida = new ArrayDeque<RespuestaHTTP>();
+        
+        // cuerpo en streaming que se esta recibiendo (null si no hay ninguno)
+        CuerpoEntrante.Encolado cuerpo_entrante;
+        
+        ConexionNio(SocketChannel canal, HttpRequestParser parser) {
+            this.canal = canal;
+            this.parser = parser;
+        }
+    }
+}
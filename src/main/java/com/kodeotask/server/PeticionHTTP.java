@@ -0,0 +1,45 @@
+package com.kodeotask.server;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// representa una peticion http ya parseada
+class PeticionHTTP {
+    String metodo;
+    String ruta;
+    String version = "HTTP/1.1";
+    Map<String, String> headers = new HashMap<String, String>();
+    String cuerpo;
+    
+    // en las rutas con cuerpo en streaming, el cuerpo se lee de aqui mientras llega (cuerpo queda null)
+    CuerpoEntrante cuerpo_entrante;
+    
+    // los rellena el router: parametros de la plantilla de ruta y de la query string
+    Map<String, Object> parametros_ruta = Collections.emptyMap();
+    Map<String, String> query = Collections.emptyMap();
+    
+    void poner_parametro(String nombre, Object valor) {
+        if (parametros_ruta.isEmpty()) {
+            parametros_ruta = new HashMap<String, Object>(4);
+        }
+        parametros_ruta.put(nombre, valor);
+    }
+    
+    long parametro_long(String nombre) {
+        return (Long) parametros_ruta.get(nombre);
+    }
+    
+    String parametro_query(String nombre) {
+        return query.get(nombre);
+    }
+    
+    // http/1.1 mantiene la conexion salvo "Connection: close"; http/1.0 solo con "Connection: keep-alive"
+    boolean quiere_keep_alive() {
+        String conexion = headers.get("connection");
+        if ("HTTP/1.0".equals(version)) {
+            return conexion != null && conexion.equalsIgnoreCase("keep-alive");
+        }
+        return conexion == null || !conexion.equalsIgnoreCase("close");
+    }
+}
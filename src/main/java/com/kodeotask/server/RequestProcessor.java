@@ -0,0 +1,688 @@
+package com.kodeotask.server;
+
+import com.kodeotask.model.Task;
+import com.kodeotask.model.TaskBulkOperation;
+import com.kodeotask.model.TaskImportProgress;
+import com.kodeotask.model.TaskPage;
+import com.kodeotask.model.TaskPatch;
+import com.kodeotask.model.TaskPatchResult;
+import com.kodeotask.model.TaskQuery;
+import com.kodeotask.model.TaskStatus;
+import com.kodeotask.service.AuthService;
+import com.kodeotask.service.TaskService;
+import com.kodeotask.util.CsvUtil;
+import com.kodeotask.util.JsonUtil;
+import com.kodeotask.util.TokenUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// procesa peticiones http ya parseadas, compartido por todos los modos del servidor tcp
+public class RequestProcessor {
+    
+    // valores por defecto de las conexiones persistentes
+    public static final int timeout_keep_alive_ms = 15000;
+    public static final int max_peticiones_por_conexion = 100;
+    
+    // paginacion de GET /api/tasks
+    private static final int tamano_pagina_por_defecto = 50;
+    private static final int tamano_pagina_maximo = 200;
+    private static final int max_operaciones_lote = 1000;
+    
+    // importacion ndjson: filas por batch jdbc y tareas entre commits (configurables por query)
+    private static final String ruta_importacion = "/api/tasks/import";
+    private static final int tamano_batch_importacion = 1000;
+    private static final int max_tamano_batch_importacion = 10000;
+    private static final int commit_importacion = 10000;
+    
+    private final AuthService servicio_auth;
+    private final TaskService servicio_tareas;
+    private final UDPServer servidor_udp;
+    private final Router router = new Router();
+    
+    public RequestProcessor(AuthService servicio_auth, TaskService servicio_tareas, UDPServer servidor_udp) {
+        this.servicio_auth = servicio_auth;
+        this.servicio_tareas = servicio_tareas;
+        this.servidor_udp = servidor_udp;
+        registrar_rutas();
+    }
+    
+    // handler de una ruta que requiere token; recibe el id del usuario autenticado
+    private interface HandlerAutenticado {
+        RespuestaHTTP manejar(PeticionHTTP peticion, Long id_usuario) throws Exception;
+    }
+    
+    private void registrar_rutas() {
+        router.registrar("POST", "/api/auth/register", this::registrar_usuario);
+        router.registrar("POST", "/api/auth/login", this::iniciar_sesion);
+        router.registrar("GET", "/api/auth/available", this::disponibilidad_usuario);
+        router.registrar("GET", "/api/auth/stats", autenticado(this::estadisticas_auth));
+        
+        router.registrar("GET", "/api/users", autenticado(this::listar_usuarios));
+        
+        router.registrar("GET", "/api/tasks", autenticado(this::listar_tareas));
+        router.registrar("POST", "/api/tasks", autenticado(this::crear_tarea));
+        router.registrar("POST", "/api/tasks/bulk", autenticado(this::procesar_lote_tareas));
+        router.registrar("POST", ruta_importacion, autenticado(this::importar_tareas));
+        router.registrar("GET", "/api/tasks/export", autenticado(this::exportar_tareas));
+        router.registrar("GET", "/api/tasks/{id:long}", autenticado(this::obtener_tarea));
+        router.registrar("PUT", "/api/tasks/{id:long}", autenticado(this::actualizar_tarea));
+        router.registrar("PATCH", "/api/tasks/{id:long}", autenticado(this::parchear_tarea));
+        router.registrar("DELETE", "/api/tasks/{id:long}", autenticado(this::eliminar_tarea));
+        
+        router.registrar("GET", "/api/cache/stats", autenticado(this::estadisticas_cache));
+    }
+    
+    // rutas cuyo cuerpo no se acumula en memoria: el handler lo lee de peticion.cuerpo_entrante
+    // mientras llega. lo consulta el parser al terminar los headers, antes de enrutar
+    boolean recibe_cuerpo_en_streaming(PeticionHTTP peticion) {
+        String ruta = peticion.ruta;
+        int longitud = ruta_importacion.length();
+        return "POST".equals(peticion.metodo) && ruta.startsWith(ruta_importacion)
+            && (ruta.length() == longitud || ruta.charAt(longitud) == '?');
+    }
+    
+    // procesa la peticion y genera una respuesta
+    public RespuestaHTTP procesar_peticion(PeticionHTTP peticion) {
+        try {
+            if (peticion.metodo.equals("OPTIONS")) {
+                return construir_respuesta(200, "OK", HttpResponseWriter.headers_cors, "");
+            }
+            
+            return router.despachar(peticion);
+            
+        } catch (Exception e) {
+            e.printStackTrace();
+            return construir_respuesta(500, "Internal Server Error", HttpResponseWriter.headers_json,
+                "{\"error\":\"" + JsonUtil.escapeJson(e.getMessage()) + "\"}");
+        }
+    }
+    
+    // valida el token Bearer antes de ejecutar el handler
+    private Router.Handler autenticado(HandlerAutenticado handler) {
+        return peticion -> {
+            String header_auth = peticion.headers.get("authorization");
+            Long id_usuario = null;
+            
+            if (header_auth != null && header_auth.startsWith("Bearer ")) {
+                String token = header_auth.substring(7);
+                id_usuario = servicio_auth.validateToken(token);
+            }
+            
+            if (id_usuario == null) {
+                return construir_respuesta(401, "Unauthorized", HttpResponseWriter.headers_json,
+                    "{\"error\":\"Token invalido o no proporcionado\"}");
+            }
+            return handler.manejar(peticion, id_usuario);
+        };
+    }
+    
+    // POST /api/auth/register
+    private RespuestaHTTP registrar_usuario(PeticionHTTP peticion) {
+        Map<String, String> cuerpo = JsonUtil.parseJson(peticion.cuerpo);
+        Map<String, Object> resultado = servicio_auth.register(
+            cuerpo.get("username"),
+            cuerpo.get("email"),
+            cuerpo.get("password"),
+            cuerpo.get("firstName"),
+            cuerpo.get("lastName")
+        );
+        
+        boolean exito = (boolean) resultado.get("success");
+        if (resultado.containsKey("busy")) {
+            return construir_respuesta(503, "Service Unavailable", HttpResponseWriter.headers_json, JsonUtil.toJson(resultado));
+        }
+        int codigo_estado = exito ? 201 : 400;
+        return construir_respuesta(codigo_estado, exito ? "Created" : "Bad Request",
+            HttpResponseWriter.headers_json, JsonUtil.toJson(resultado));
+    }
+    
+    // POST /api/auth/login
+    private RespuestaHTTP iniciar_sesion(PeticionHTTP peticion) {
+        Map<String, String> cuerpo = JsonUtil.parseJson(peticion.cuerpo);
+        Map<String, Object> resultado = servicio_auth.login(
+            cuerpo.get("username"),
+            cuerpo.get("password")
+        );
+        
+        boolean exito = (boolean) resultado.get("success");
+        // pool de hashing saturado: 503 para que el cliente reintente, no 401
+        if (resultado.containsKey("busy")) {
+            return construir_respuesta(503, "Service Unavailable", HttpResponseWriter.headers_json, JsonUtil.toJson(resultado));
+        }
+        int codigo_estado = exito ? 200 : 401;
+        return construir_respuesta(codigo_estado, exito ? "OK" : "Unauthorized",
+            HttpResponseWriter.headers_json, JsonUtil.toJson(resultado));
+    }
+    
+    // GET /api/users
+    private RespuestaHTTP listar_usuarios(PeticionHTTP peticion, Long id_usuario) {
+        try {
+            List<com.kodeotask.model.User> usuarios = servicio_auth.getAllUsers();
+            return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, JsonUtil.usersToJson(usuarios));
+        } catch (Exception e) {
+            return construir_respuesta(500, "Internal Server Error", HttpResponseWriter.headers_json,
+                "{\"error\":\"" + JsonUtil.escapeJson(e.getMessage()) + "\"}");
+        }
+    }
+    
+    // GET /api/auth/available?username=&email=: si estan libres, para el formulario de registro.
+    // casi siempre responde el filtro de nombres en memoria; es orientativo, el registro lo confirma
+    private RespuestaHTTP disponibilidad_usuario(PeticionHTTP peticion) throws Exception {
+        String username = peticion.parametro_query("username");
+        String email = peticion.parametro_query("email");
+        if ((username == null || username.isEmpty()) && (email == null || email.isEmpty())) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"Se requiere username o email\"}");
+        }
+        
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        boolean disponible = true;
+        if (username != null && !username.isEmpty()) {
+            boolean libre = servicio_auth.isUsernameAvailable(username);
+            resultado.put("username", username);
+            resultado.put("usernameAvailable", libre);
+            disponible &= libre;
+        }
+        if (email != null && !email.isEmpty()) {
+            boolean libre = servicio_auth.isEmailAvailable(email);
+            resultado.put("email", email);
+            resultado.put("emailAvailable", libre);
+            disponible &= libre;
+        }
+        resultado.put("available", disponible);
+        return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, JsonUtil.toJson(resultado));
+    }
+    
+    // GET /api/auth/stats: metricas del pool de hashing de contraseñas (espera en cola, tiempo de hash,
+    // rechazos) y del filtro de nombres
+    private RespuestaHTTP estadisticas_auth(PeticionHTTP peticion, Long id_usuario) {
+        return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, json_por_nombre(servicio_auth.getStats()));
+    }
+    
+    // GET /api/cache/stats: contadores de los caches en memoria ({"tasks":{"hits":...,"misses":...}})
+    private RespuestaHTTP estadisticas_cache(PeticionHTTP peticion, Long id_usuario) {
+        Map<String, Map<String, Object>> caches = new LinkedHashMap<>(servicio_tareas.getCacheStats());
+        caches.put("taskJson", JsonUtil.taskJsonCacheStats());
+        caches.put("tokens", TokenUtil.getCacheStats());
+        return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, json_por_nombre(caches));
+    }
+    
+    // {"nombre":{...contadores...},...}
+    private static String json_por_nombre(Map<String, Map<String, Object>> grupos) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Map<String, Object>> grupo : grupos.entrySet()) {
+            if (json.length() > 1) {
+                json.append(",");
+            }
+            json.append("\"").append(grupo.getKey()).append("\":").append(JsonUtil.toJson(grupo.getValue()));
+        }
+        return json.append("}").toString();
+    }
+    
+    // GET /api/tasks[?status=&category=&dueBefore=&dueAfter=&createdBy=&assignedToMe=&sort=&limit=&cursor=]
+    private RespuestaHTTP listar_tareas(PeticionHTTP peticion, Long id_usuario) {
+        System.out.println("[TASK] GET /api/tasks - Usuario: " + id_usuario);
+        
+        if (peticion.query.isEmpty()) {
+            List<Task> tareas = servicio_tareas.getUserTasks(id_usuario);
+            System.out.println("[TASK] Total tareas: " + tareas.size());
+            return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, JsonUtil.tasksToJsonBytes(tareas));
+        }
+        
+        // con limit o cursor se responde una pagina {"tasks":[...],"nextCursor":...}; sin ellos, el array completo
+        String cursor = peticion.parametro_query("cursor");
+        TaskQuery consulta;
+        TaskPage pagina = null;
+        List<Task> tareas = null;
+        try {
+            consulta = leer_consulta_tareas(peticion);
+            if (consulta.getLimit() > 0 || cursor != null) {
+                if (consulta.getLimit() == 0) {
+                    consulta.setLimit(tamano_pagina_por_defecto);
+                }
+                pagina = servicio_tareas.getUserTasksPage(id_usuario, consulta, cursor);
+            } else {
+                tareas = servicio_tareas.getUserTasks(id_usuario, consulta);
+            }
+        } catch (IllegalArgumentException e) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"" + JsonUtil.escapeJson(e.getMessage()) + "\"}");
+        }
+        
+        if (pagina != null) {
+            System.out.println("[TASK] Pagina de " + pagina.getTasks().size() + " tareas");
+            return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, JsonUtil.pageToJsonBytes(pagina));
+        }
+        System.out.println("[TASK] Total tareas: " + tareas.size());
+        return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, JsonUtil.tasksToJsonBytes(tareas));
+    }
+    
+    // exporta las tareas visibles en ndjson (por defecto) o csv, con los mismos filtros y orden que GET /api/tasks;
+    // cada fila se escribe segun se lee de la base de datos y el cuerpo sale en chunks
+    private RespuestaHTTP exportar_tareas(PeticionHTTP peticion, Long id_usuario) {
+        String formato = peticion.parametro_query("format");
+        boolean csv = "csv".equals(formato);
+        if (formato != null && !csv && !formato.equals("ndjson")) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"format debe ser ndjson o csv\"}");
+        }
+        
+        TaskQuery consulta;
+        try {
+            consulta = leer_consulta_tareas(peticion);
+        } catch (IllegalArgumentException e) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"" + JsonUtil.escapeJson(e.getMessage()) + "\"}");
+        }
+        System.out.println("[TASK] GET /api/tasks/export - formato: " + (csv ? "csv" : "ndjson") + " - Usuario: " + id_usuario);
+        
+        return HttpResponseWriter.crear_streaming(200, "OK", csv ? HttpResponseWriter.headers_csv : HttpResponseWriter.headers_ndjson,
+            salida -> {
+                Writer escritor = new OutputStreamWriter(salida, StandardCharsets.UTF_8);
+                StringBuilder linea = new StringBuilder(1024);
+                if (csv) {
+                    escritor.write(CsvUtil.TASK_HEADER);
+                }
+                int[] exportadas = { 0 };
+                servicio_tareas.exportUserTasks(id_usuario, consulta, tarea -> {
+                    linea.setLength(0);
+                    if (csv) {
+                        CsvUtil.appendTask(linea, tarea);
+                    } else {
+                        linea.append(tarea.toJson()).append('\n');
+                    }
+                    escritor.append(linea);
+                    exportadas[0]++;
+                });
+                escritor.flush();
+                System.out.println("[TASK] Exportadas " + exportadas[0] + " tareas - Usuario: " + id_usuario);
+            });
+    }
+    
+    // convierte los parametros de la query en filtros/orden para TaskDAO; lanza IllegalArgumentException si alguno no es valido
+    private TaskQuery leer_consulta_tareas(PeticionHTTP peticion) {
+        TaskQuery consulta = new TaskQuery();
+        
+        String estado = peticion.parametro_query("status");
+        if (estado != null) {
+            try {
+                consulta.setStatus(TaskStatus.valueOf(estado.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("status debe ser PENDING, IN_PROGRESS o COMPLETED");
+            }
+        }
+        
+        String categoria = peticion.parametro_query("category");
+        if (categoria != null && !categoria.isEmpty()) {
+            consulta.setCategory(categoria);
+        }
+        
+        consulta.setDueBefore(leer_fecha(peticion, "dueBefore"));
+        consulta.setDueAfter(leer_fecha(peticion, "dueAfter"));
+        
+        String creador = peticion.parametro_query("createdBy");
+        if (creador != null) {
+            try {
+                consulta.setCreatedBy(Long.parseLong(creador));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("createdBy debe ser un id de usuario");
+            }
+        }
+        
+        String asignadas = peticion.parametro_query("assignedToMe");
+        consulta.setAssignedToMe(asignadas != null && (asignadas.isEmpty() || asignadas.equalsIgnoreCase("true")));
+        
+        String orden = peticion.parametro_query("sort");
+        if (orden != null) {
+            if (orden.equals("dueDate")) {
+                consulta.setSort(TaskQuery.Sort.DUE_DATE);
+            } else if (orden.equals("createdAt")) {
+                consulta.setSort(TaskQuery.Sort.CREATED_AT);
+            } else {
+                throw new IllegalArgumentException("sort debe ser dueDate o createdAt");
+            }
+        }
+        
+        String limite = peticion.parametro_query("limit");
+        if (limite != null) {
+            int tamano_pagina;
+            try {
+                tamano_pagina = Integer.parseInt(limite);
+            } catch (NumberFormatException e) {
+                tamano_pagina = 0;
+            }
+            if (tamano_pagina < 1 || tamano_pagina > tamano_pagina_maximo) {
+                throw new IllegalArgumentException("limit debe estar entre 1 y " + tamano_pagina_maximo);
+            }
+            consulta.setLimit(tamano_pagina);
+        }
+        
+        return consulta;
+    }
+    
+    private static LocalDateTime leer_fecha(PeticionHTTP peticion, String nombre) {
+        String valor = peticion.parametro_query(nombre);
+        if (valor == null || valor.isEmpty()) {
+            return null;
+        }
+        try {
+            return JsonUtil.parseDateTime(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(nombre + " debe ser una fecha ISO (2024-05-01 o 2024-05-01T10:00:00)");
+        }
+    }
+    
+    // GET /api/tasks/{id}
+    private RespuestaHTTP obtener_tarea(PeticionHTTP peticion, Long id_usuario) {
+        Long id_tarea = peticion.parametro_long("id");
+        System.out.println("[TASK] GET /api/tasks/" + id_tarea + " - Usuario: " + id_usuario);
+        Optional<Task> tarea = servicio_tareas.getTaskById(id_tarea, id_usuario);
+        
+        if (tarea.isPresent()) {
+            Task t = tarea.get();
+            System.out.println("[TASK] Tarea encontrada: " + t.getTitle());
+            return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, JsonUtil.taskToJsonBytes(t));
+        } else {
+            System.out.println("[TASK] Tarea no encontrada");
+            return construir_respuesta(404, "Not Found", HttpResponseWriter.headers_json,
+                "{\"error\":\"Tarea no encontrada\"}");
+        }
+    }
+    
+    // POST /api/tasks
+    private RespuestaHTTP crear_tarea(PeticionHTTP peticion, Long id_usuario) {
+        try {
+            System.out.println("[TASK] POST /api/tasks - CREAR - Usuario: " + id_usuario);
+            Task tarea = JsonUtil.parseTask(peticion.cuerpo);
+            System.out.println("[TASK] Titulo: " + tarea.getTitle());
+            
+            Task tarea_creada = servicio_tareas.createTask(tarea, id_usuario);
+            System.out.println("[TASK] Tarea creada - ID: " + tarea_creada.getId());
+            
+            if (servidor_udp != null && tarea_creada.getAssignedUsers() != null && 
+                tarea_creada.getAssignedUsers().size() > 0) {
+                System.out.println("[UDP] Enviando notificaciones de asignacion");
+                for (Long id_usuario_asignado : tarea_creada.getAssignedUsers()) {
+                    if (!id_usuario_asignado.equals(id_usuario)) {
+                        servidor_udp.sendNotification(id_usuario_asignado, "task_assigned", tarea_creada);
+                    }
+                }
+                servidor_udp.broadcast("task_created", tarea_creada);
+            }
+            
+            if (servidor_udp != null) {
+                servidor_udp.sendNotification(id_usuario, "task_created", tarea_creada);
+            }
+            
+            return construir_respuesta(201, "Created", HttpResponseWriter.headers_json, JsonUtil.taskToJson(tarea_creada));
+        } catch (Exception e) {
+            System.err.println("[TASK] Error al crear tarea: " + e.getMessage());
+            e.printStackTrace();
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"" + JsonUtil.escapeJson(e.getMessage()) + "\"}");
+        }
+    }
+    
+    // PUT /api/tasks/{id}
+    private RespuestaHTTP actualizar_tarea(PeticionHTTP peticion, Long id_usuario) {
+        Long id_tarea = peticion.parametro_long("id");
+        System.out.println("[TASK] PUT /api/tasks/" + id_tarea + " - Usuario: " + id_usuario);
+        Task tarea_actualizar = JsonUtil.parseTask(peticion.cuerpo);
+        
+        Optional<Task> tarea_actualizada = servicio_tareas.updateTask(id_tarea, tarea_actualizar, id_usuario);
+        
+        if (tarea_actualizada.isPresent()) {
+            Task tarea = tarea_actualizada.get();
+            System.out.println("[TASK] Tarea actualizada - ID: " + tarea.getId());
+            notificar_actualizacion(tarea, id_usuario);
+            return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, JsonUtil.taskToJsonBytes(tarea));
+        } else {
+            System.out.println("[TASK] No autorizado o tarea no encontrada");
+            return construir_respuesta(403, "Forbidden", HttpResponseWriter.headers_json,
+                "{\"error\":\"No autorizado o tarea no encontrada\"}");
+        }
+    }
+    
+    // actualiza solo los campos enviados; con "version" en el cuerpo responde 409 si la tarea cambio desde entonces
+    private RespuestaHTTP parchear_tarea(PeticionHTTP peticion, Long id_usuario) throws Exception {
+        Long id_tarea = peticion.parametro_long("id");
+        System.out.println("[TASK] PATCH /api/tasks/" + id_tarea + " - Usuario: " + id_usuario);
+        
+        TaskPatch cambios;
+        try {
+            cambios = JsonUtil.parseTaskPatch(peticion.cuerpo);
+        } catch (IllegalArgumentException e) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"" + JsonUtil.escapeJson(e.getMessage()) + "\"}");
+        }
+        if (cambios.isEmpty()) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"No hay campos para actualizar\"}");
+        }
+        
+        TaskPatchResult resultado = servicio_tareas.patchTask(id_tarea, cambios, id_usuario);
+        switch (resultado.getOutcome()) {
+            case NOT_FOUND:
+                return construir_respuesta(404, "Not Found", HttpResponseWriter.headers_json,
+                    "{\"error\":\"Tarea no encontrada\"}");
+            case FORBIDDEN:
+                return construir_respuesta(403, "Forbidden", HttpResponseWriter.headers_json,
+                    "{\"error\":\"No autorizado\"}");
+            case CONFLICT:
+                System.out.println("[TASK] Conflicto de version en tarea " + id_tarea + " - version actual: " + resultado.getCurrentVersion());
+                return construir_respuesta(409, "Conflict", HttpResponseWriter.headers_json,
+                    "{\"error\":\"La tarea fue modificada por otra peticion\",\"version\":" + resultado.getCurrentVersion() + "}");
+            default:
+                Task tarea = resultado.getTask();
+                System.out.println("[TASK] Tarea actualizada (PATCH) - ID: " + tarea.getId() + " - version: " + tarea.getVersion());
+                notificar_actualizacion(tarea, id_usuario);
+                return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, JsonUtil.taskToJsonBytes(tarea));
+        }
+    }
+    
+    // avisa por UDP a los asignados, al resto de clientes y al propio usuario de una tarea actualizada
+    private void notificar_actualizacion(Task tarea, Long id_usuario) {
+        if (servidor_udp != null && tarea.getAssignedUsers() != null && 
+            tarea.getAssignedUsers().size() > 0) {
+            System.out.println("[UDP] Enviando notificaciones de asignacion");
+            for (Long id_usuario_asignado : tarea.getAssignedUsers()) {
+                if (!id_usuario_asignado.equals(id_usuario)) {
+                    servidor_udp.sendNotification(id_usuario_asignado, "task_assigned", tarea);
+                }
+            }
+            servidor_udp.broadcast("task_updated", tarea);
+        }
+        
+        if (servidor_udp != null) {
+            servidor_udp.sendNotification(id_usuario, "task_updated", tarea);
+        }
+    }
+    
+    // ejecuta un array de operaciones create/update/delete en una sola transaccion y devuelve el resultado de cada una
+    private RespuestaHTTP procesar_lote_tareas(PeticionHTTP peticion, Long id_usuario) throws Exception {
+        List<String> elementos;
+        try {
+            elementos = JsonUtil.splitArray(peticion.cuerpo);
+        } catch (IllegalArgumentException e) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"El cuerpo debe ser un array JSON de operaciones\"}");
+        }
+        if (elementos.isEmpty() || elementos.size() > max_operaciones_lote) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"El lote debe tener entre 1 y " + max_operaciones_lote + " operaciones\"}");
+        }
+        System.out.println("[TASK] POST /api/tasks/bulk - " + elementos.size() + " operaciones - Usuario: " + id_usuario);
+        
+        List<TaskBulkOperation> operaciones = new ArrayList<TaskBulkOperation>(elementos.size());
+        for (String elemento : elementos) {
+            operaciones.add(leer_operacion_lote(elemento));
+        }
+        
+        servicio_tareas.executeBulk(id_usuario, operaciones);
+        
+        List<Task> creadas = new ArrayList<Task>();
+        List<Task> actualizadas = new ArrayList<Task>();
+        List<Long> eliminadas = new ArrayList<Long>();
+        StringBuilder json = new StringBuilder("{\"results\":[");
+        int correctas = 0;
+        for (int i = 0; i < operaciones.size(); i++) {
+            TaskBulkOperation operacion = operaciones.get(i);
+            if (i > 0) json.append(",");
+            json.append(operacion.toJson(i));
+            if (!operacion.isSucceeded()) {
+                continue;
+            }
+            correctas++;
+            if (operacion.getType() == TaskBulkOperation.Type.DELETE) {
+                eliminadas.add(operacion.getTaskId());
+            } else if (operacion.getResult() == null) {
+                continue;
+            } else if (operacion.getType() == TaskBulkOperation.Type.CREATE) {
+                creadas.add(operacion.getResult());
+            } else {
+                actualizadas.add(operacion.getResult());
+            }
+        }
+        json.append("],\"succeeded\":").append(correctas);
+        json.append(",\"failed\":").append(operaciones.size() - correctas).append("}");
+        
+        if (servidor_udp != null && correctas > 0) {
+            servidor_udp.sendBulkNotifications(id_usuario, creadas, actualizadas, eliminadas);
+        }
+        
+        return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, json.toString());
+    }
+    
+    // interpreta una operacion del lote: {"op":"create", ...campos}, {"op":"update","id":N, ...campos} o {"op":"delete","id":N};
+    // los errores de formato quedan como resultado 400 de esa operacion
+    private TaskBulkOperation leer_operacion_lote(String elemento) {
+        Map<String, String> campos = JsonUtil.parseJson(elemento);
+        String op = campos.get("op") != null ? campos.get("op").toLowerCase() : "";
+        
+        if (op.equals("create")) {
+            Task tarea = JsonUtil.parseTask(elemento);
+            tarea.setId(null);
+            if (tarea.getTitle() == null || tarea.getTitle().trim().isEmpty()) {
+                return TaskBulkOperation.invalid(TaskBulkOperation.Type.CREATE, null, "title es obligatorio");
+            }
+            return TaskBulkOperation.create(tarea);
+        }
+        
+        TaskBulkOperation.Type tipo = op.equals("update") ? TaskBulkOperation.Type.UPDATE
+            : op.equals("delete") ? TaskBulkOperation.Type.DELETE : null;
+        if (tipo == null) {
+            return TaskBulkOperation.invalid(null, null, "op debe ser create, update o delete");
+        }
+        
+        Long id_tarea;
+        try {
+            id_tarea = Long.parseLong(String.valueOf(campos.get("id")).trim());
+        } catch (NumberFormatException e) {
+            return TaskBulkOperation.invalid(tipo, null, "id es obligatorio");
+        }
+        if (tipo == TaskBulkOperation.Type.DELETE) {
+            return TaskBulkOperation.delete(id_tarea);
+        }
+        
+        try {
+            TaskPatch cambios = JsonUtil.parseTaskPatch(elemento);
+            if (cambios.isEmpty()) {
+                return TaskBulkOperation.invalid(tipo, id_tarea, "No hay campos para actualizar");
+            }
+            return TaskBulkOperation.update(id_tarea, cambios);
+        } catch (IllegalArgumentException e) {
+            return TaskBulkOperation.invalid(tipo, id_tarea, e.getMessage());
+        }
+    }
+    
+    // POST /api/tasks/import?batchSize=N&commitEvery=M
+    // importa tareas desde un cuerpo ndjson que se lee y se inserta a medida que llega; el progreso se
+    // registra en el log y se notifica por udp tras cada commit, y la respuesta trae los contadores finales
+    private RespuestaHTTP importar_tareas(PeticionHTTP peticion, Long id_usuario) {
+        int tamano_batch;
+        int intervalo_commit;
+        try {
+            tamano_batch = leer_entero(peticion, "batchSize", tamano_batch_importacion, 1, max_tamano_batch_importacion);
+            intervalo_commit = leer_entero(peticion, "commitEvery", commit_importacion, 1, Integer.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            return construir_respuesta(400, "Bad Request", HttpResponseWriter.headers_json,
+                "{\"error\":\"" + JsonUtil.escapeJson(e.getMessage()) + "\"}");
+        }
+        System.out.println("[TASK] POST /api/tasks/import - Usuario: " + id_usuario);
+        
+        InputStream cuerpo = peticion.cuerpo_entrante != null ? peticion.cuerpo_entrante
+            : new ByteArrayInputStream(peticion.cuerpo != null ? peticion.cuerpo.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        TaskImportProgress progreso = servicio_tareas.importTasks(id_usuario, cuerpo, tamano_batch, intervalo_commit,
+            avance -> {
+                System.out.println("[TASK] Importacion - Usuario: " + id_usuario + " - " + avance.getCommitted()
+                    + " tareas confirmadas, " + avance.getFailed() + " fallidas, " + avance.getRowsPerSecond() + " tareas/s");
+                if (servidor_udp != null) {
+                    servidor_udp.sendImportProgress(id_usuario, avance.toJson(false));
+                }
+            });
+        
+        if (progreso.isAborted()) {
+            return construir_respuesta(500, "Internal Server Error", HttpResponseWriter.headers_json, progreso.toJson(true));
+        }
+        return construir_respuesta(200, "OK", HttpResponseWriter.headers_json, progreso.toJson(true));
+    }
+    
+    // lee un parametro entero de la query; lanza IllegalArgumentException si no esta entre minimo y maximo
+    private static int leer_entero(PeticionHTTP peticion, String nombre, int por_defecto, int minimo, int maximo) {
+        String valor = peticion.parametro_query(nombre);
+        if (valor == null) {
+            return por_defecto;
+        }
+        try {
+            int numero = Integer.parseInt(valor);
+            if (numero >= minimo && numero <= maximo) {
+                return numero;
+            }
+        } catch (NumberFormatException e) {
+        }
+        throw new IllegalArgumentException(nombre + " debe estar entre " + minimo + " y " + maximo);
+    }
+    
+    // DELETE /api/tasks/{id}
+    private RespuestaHTTP eliminar_tarea(PeticionHTTP peticion, Long id_usuario) {
+        Long id_tarea = peticion.parametro_long("id");
+        System.out.println("[TASK] DELETE /api/tasks/" + id_tarea + " - Usuario: " + id_usuario);
+        boolean eliminada = servicio_tareas.deleteTask(id_tarea, id_usuario);
+        
+        if (eliminada) {
+            System.out.println("[TASK] Tarea eliminada");
+            if (servidor_udp != null) {
+                servidor_udp.sendNotification(id_usuario, "task_deleted", null);
+            }
+            
+            return construir_respuesta(204, "No Content", HttpResponseWriter.headers_cors, "");
+        } else {
+            System.out.println("[TASK] No autorizado o tarea no encontrada");
+            return construir_respuesta(403, "Forbidden", HttpResponseWriter.headers_json,
+                "{\"error\":\"No autorizado o tarea no encontrada\"}");
+        }
+    }
+    
+    // construye una respuesta http
+    RespuestaHTTP construir_respuesta(int codigo_estado, String mensaje_estado, byte[] headers, String cuerpo) {
+        return HttpResponseWriter.crear(codigo_estado, mensaje_estado, headers, cuerpo);
+    }
+    
+    // cuerpo ya codificado en utf-8 (json de tareas armado con el cache de JsonUtil)
+    RespuestaHTTP construir_respuesta(int codigo_estado, String mensaje_estado, byte[] headers, byte[] cuerpo) {
+        return HttpResponseWriter.crear(codigo_estado, mensaje_estado, headers, cuerpo);
+    }
+    
+    // respuesta de error que no llega a los handlers (peticion invalida, servidor ocupado); cierra la conexion
+    RespuestaHTTP respuesta_error_conexion(int codigo_estado, String mensaje_estado, String error) {
+        return construir_respuesta(codigo_estado, mensaje_estado, HttpResponseWriter.headers_json,
+            "{\"error\":\"" + JsonUtil.escapeJson(error) + "\"}").con_conexion(false, 0, 0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.kodeotask.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+// respuesta http lista para escribir: linea de estado y headers fijos ya codificados,
+// cuerpo codificado una sola vez en utf-8 (normalmente en un buffer del pool)
+class RespuestaHTTP {
+    final int codigo_estado;
+    final byte[] linea_estado;
+    final byte[] headers;
+    final ByteBuffer cuerpo;
+    private final boolean cuerpo_del_pool;
+    
+    // partes en el orden en que se envian; se fijan con con_conexion
+    ByteBuffer[] partes;
+    
+    RespuestaHTTP(int codigo_estado, byte[] linea_estado, byte[] headers, ByteBuffer cuerpo, boolean cuerpo_del_pool) {
+        this.codigo_estado = codigo_estado;
+        this.linea_estado = linea_estado;
+        this.headers = headers;
+        this.cuerpo = cuerpo;
+        this.cuerpo_del_pool = cuerpo_del_pool;
+    }
+    
+    // agrega Content-Length y los headers Connection/Keep-Alive y prepara las partes para una gathering write
+    RespuestaHTTP con_conexion(boolean mantener_conexion, int timeout_ms, int peticiones_restantes) {
+        partes = new ByteBuffer[] {
+            ByteBuffer.wrap(linea_estado),
+            ByteBuffer.wrap(headers),
+            HttpResponseWriter.headers_finales(cuerpo.remaining(), mantener_conexion, timeout_ms / 1000, peticiones_restantes),
+            cuerpo
+        };
+        return this;
+    }
+    
+    // true cuando todas las partes se han escrito en el canal
+    boolean escrita() {
+        return !partes[partes.length - 1].hasRemaining();
+    }
+    
+    // agrega a destino las partes pendientes para la gathering write del event loop; devuelve
+    // false si la respuesta aun no tiene todo su cuerpo y no deben escribirse las siguientes
+    boolean agregar_partes(List<ByteBuffer> destino) {
+        for (ByteBuffer parte : partes) {
+            destino.add(parte);
+        }
+        return true;
+    }
+    
+    // false mientras no haya bytes que enviar (cuerpo en streaming esperando al generador)
+    boolean lista_para_escribir() {
+        return true;
+    }
+    
+    // genera el cuerpo en el hilo que llama; aviso se ejecuta cada vez que hay un bloque nuevo.
+    // solo lo usan las respuestas en streaming
+    void producir(Runnable aviso) {
+    }
+    
+    // true si tras escribirla hay que cerrar la conexion (cuerpo en streaming interrumpido)
+    boolean cierra_conexion() {
+        return false;
+    }
+    
+    // escribe la respuesta en un stream bloqueante (el flush lo decide quien llama)
+    void escribir_en(OutputStream out) throws IOException {
+        for (ByteBuffer parte : partes) {
+            out.write(parte.array(), parte.arrayOffset() + parte.position(), parte.remaining());
+            parte.position(parte.limit());
+        }
+    }
+    
+    // devuelve el buffer del cuerpo al pool; la respuesta no debe usarse despues
+    void liberar() {
+        if (cuerpo_del_pool) {
+            HttpResponseWriter.devolver_buffer(cuerpo);
+        }
+    }
+}
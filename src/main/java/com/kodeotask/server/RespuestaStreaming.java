@@ -0,0 +1,237 @@
+package com.kodeotask.server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// respuesta con cuerpo de longitud desconocida enviada con Transfer-Encoding: chunked.
+// el generador escribe el cuerpo en un OutputStream y cada bloque lleno sale como un chunk,
+// asi la memoria usada no depende del tamano total del cuerpo.
+// en modo bloqueante el cuerpo se genera directamente sobre el socket; en modo nio lo genera
+// un worker y los bloques pasan al event loop por una cola acotada (si el cliente lee despacio,
+// el worker espera en lugar de acumular bloques)
+class RespuestaStreaming extends RespuestaHTTP {
+    
+    // escribe el cuerpo en salida; debe hacer flush de sus propios buffers antes de terminar
+    interface Generador {
+        void generar(OutputStream salida) throws Exception;
+    }
+    
+    static final int tamano_bloque = 16 * 1024;
+    private static final int max_bloques_en_cola = 4;
+    
+    // "FFFFFFFF\r\n": espacio reservado delante de cada bloque para su tamano en hexadecimal
+    private static final int espacio_cabecera = 10;
+    private static final byte[] fin_chunk = { '\r', '\n' };
+    private static final byte[] ultimo_chunk = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final ByteBuffer fin_de_bloques = ByteBuffer.allocate(0);
+    
+    private final Generador generador;
+    
+    // modo nio: bloques que el worker ya genero y el event loop aun no tomo
+    private final BlockingQueue<ByteBuffer> bloques = new ArrayBlockingQueue<ByteBuffer>(max_bloques_en_cola);
+    private final ArrayDeque<ByteBuffer> en_escritura = new ArrayDeque<ByteBuffer>();
+    private boolean fin_recibido = false;
+    private volatile boolean cancelada = false;
+    private volatile boolean fallida = false;
+    
+    RespuestaStreaming(int codigo_estado, byte[] linea_estado, byte[] headers, Generador generador) {
+        super(codigo_estado, linea_estado, headers, ByteBuffer.allocate(0), false);
+        this.generador = generador;
+    }
+    
+    RespuestaHTTP con_conexion(boolean mantener_conexion, int timeout_ms, int peticiones_restantes) {
+        partes = new ByteBuffer[] {
+            ByteBuffer.wrap(linea_estado),
+            ByteBuffer.wrap(headers),
+            HttpResponseWriter.headers_finales_chunked(mantener_conexion, timeout_ms / 1000, peticiones_restantes)
+        };
+        return this;
+    }
+    
+    // modo bloqueante: headers y despues el cuerpo a medida que se genera. si el generador
+    // falla el cuerpo queda sin el chunk final y quien llama cierra la conexion
+    void escribir_en(OutputStream out) throws IOException {
+        for (ByteBuffer parte : partes) {
+            out.write(parte.array(), parte.arrayOffset() + parte.position(), parte.remaining());
+            parte.position(parte.limit());
+        }
+        
+        SalidaChunked salida = new SalidaChunked(true) {
+            void enviar(byte[] bloque, int inicio, int fin) throws IOException {
+                out.write(bloque, inicio, fin - inicio);
+            }
+        };
+        generar_en(salida);
+    }
+    
+    // modo nio: se ejecuta en un worker; cada bloque se encola y se avisa al event loop
+    void producir(Runnable aviso) {
+        SalidaChunked salida = new SalidaChunked(false) {
+            void enviar(byte[] bloque, int inicio, int fin) throws IOException {
+                encolar(ByteBuffer.wrap(bloque, inicio, fin - inicio));
+                aviso.run();
+            }
+        };
+        try {
+            generar_en(salida);
+        } catch (IOException e) {
+            if (!cancelada) {
+                System.err.println("[TCP] Respuesta en streaming interrumpida: " + e.getMessage());
+            }
+            fallida = true;
+        }
+        
+        try {
+            encolar(fin_de_bloques);
+            aviso.run();
+        } catch (IOException e) {
+            // conexion cerrada: nadie espera el final
+        }
+    }
+    
+    private void generar_en(SalidaChunked salida) throws IOException {
+        try {
+            generador.generar(salida);
+            salida.terminar();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error generando el cuerpo: " + e.getMessage(), e);
+        }
+    }
+    
+    private void encolar(ByteBuffer bloque) throws IOException {
+        try {
+            while (!bloques.offer(bloque, 1, TimeUnit.SECONDS)) {
+                if (cancelada) {
+                    throw new IOException("Conexion cerrada por el cliente");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Streaming interrumpido");
+        }
+    }
+    
+    // hilo del event loop: toma los bloques ya generados; mientras no llegue el final las
+    // respuestas siguientes no se agregan a la escritura
+    boolean agregar_partes(List<ByteBuffer> destino) {
+        for (ByteBuffer parte : partes) {
+            destino.add(parte);
+        }
+        ByteBuffer bloque;
+        while (!fin_recibido && (bloque = bloques.poll()) != null) {
+            if (bloque == fin_de_bloques) {
+                fin_recibido = true;
+            } else {
+                en_escritura.add(bloque);
+            }
+        }
+        destino.addAll(en_escritura);
+        // tras un cuerpo interrumpido se cierra la conexion: nada detras de el
+        return fin_recibido && !fallida;
+    }
+    
+    boolean escrita() {
+        while (!en_escritura.isEmpty() && !en_escritura.peek().hasRemaining()) {
+            en_escritura.poll();
+        }
+        return fin_recibido && en_escritura.isEmpty() && !partes[partes.length - 1].hasRemaining();
+    }
+    
+    boolean lista_para_escribir() {
+        return fin_recibido || !en_escritura.isEmpty() || !bloques.isEmpty() || partes[partes.length - 1].hasRemaining();
+    }
+    
+    boolean cierra_conexion() {
+        return fallida;
+    }
+    
+    // la conexion se cerro o la respuesta ya se envio: el worker deja de generar
+    void liberar() {
+        cancelada = true;
+    }
+    
+    // OutputStream que agrupa lo escrito en bloques de tamano_bloque y los envia enmarcados como chunks
+    private abstract static class SalidaChunked extends OutputStream {
+        private final boolean reutilizar_bloque;
+        private byte[] bloque = nuevo_bloque();
+        private int posicion = espacio_cabecera;
+        private boolean terminada = false;
+        
+        SalidaChunked(boolean reutilizar_bloque) {
+            this.reutilizar_bloque = reutilizar_bloque;
+        }
+        
+        // envia bloque[inicio, fin); si no se reutilizan bloques, el array pasa a ser de quien lo recibe
+        abstract void enviar(byte[] bloque, int inicio, int fin) throws IOException;
+        
+        public void write(int b) throws IOException {
+            if (posicion == espacio_cabecera + tamano_bloque) {
+                enviar_bloque();
+            }
+            bloque[posicion++] = (byte) b;
+        }
+        
+        public void write(byte[] datos, int desde, int longitud) throws IOException {
+            while (longitud > 0) {
+                if (posicion == espacio_cabecera + tamano_bloque) {
+                    enviar_bloque();
+                }
+                int n = Math.min(longitud, espacio_cabecera + tamano_bloque - posicion);
+                System.arraycopy(datos, desde, bloque, posicion, n);
+                posicion += n;
+                desde += n;
+                longitud -= n;
+            }
+        }
+        
+        // los chunks solo salen llenos o al terminar, para no enviar chunks diminutos
+        public void flush() {
+        }
+        
+        void terminar() throws IOException {
+            if (terminada) {
+                return;
+            }
+            terminada = true;
+            if (posicion > espacio_cabecera) {
+                enviar_bloque();
+            }
+            byte[] fin = reutilizar_bloque ? ultimo_chunk : ultimo_chunk.clone();
+            enviar(fin, 0, fin.length);
+        }
+        
+        private void enviar_bloque() throws IOException {
+            int longitud = posicion - espacio_cabecera;
+            int inicio = espacio_cabecera;
+            bloque[--inicio] = '\n';
+            bloque[--inicio] = '\r';
+            for (int resto = longitud; ; resto >>>= 4) {
+                bloque[--inicio] = (byte) Character.forDigit(resto & 0xF, 16);
+                if (resto < 16) {
+                    break;
+                }
+            }
+            System.arraycopy(fin_chunk, 0, bloque, posicion, fin_chunk.length);
+            enviar(bloque, inicio, posicion + fin_chunk.length);
+            
+            if (!reutilizar_bloque) {
+                bloque = nuevo_bloque();
+            }
+            posicion = espacio_cabecera;
+        }
+        
+        private static byte[] nuevo_bloque() {
+            return new byte[espacio_cabecera + tamano_bloque + fin_chunk.length];
+        }
+    }
+}
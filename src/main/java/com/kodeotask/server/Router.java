@@ -0,0 +1,219 @@
+package com.kodeotask.server;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// enrutador precompilado: arbol de segmentos de ruta construido al registrar los handlers.
+// cada peticion recorre el arbol comparando caracteres de cada segmento, sin regex ni substrings
+// salvo para los parametros de tipo texto; devuelve 404/405 directamente
+public class Router {
+    
+    // handler de una ruta; recibe la peticion con los parametros de ruta y query ya extraidos
+    public interface Handler {
+        RespuestaHTTP manejar(PeticionHTTP peticion) throws Exception;
+    }
+    
+    private enum TipoParametro { LONG, TEXTO }
+    
+    private static class Nodo {
+        final String segmento;
+        Nodo[] hijos_literales = new Nodo[0];
+        Nodo hijo_parametro;
+        String nombre_parametro;
+        TipoParametro tipo_parametro;
+        final Map<String, Handler> handlers = new HashMap<String, Handler>();
+        byte[] headers_405;
+        
+        Nodo(String segmento) {
+            this.segmento = segmento;
+        }
+    }
+    
+    private final Nodo raiz = new Nodo("");
+    
+    // registra un handler para el metodo y la plantilla, p. ej. "/api/tasks/{id:long}";
+    // los parametros sin tipo ("{nombre}") se extraen como texto
+    public void registrar(String metodo, String plantilla, Handler handler) {
+        if (!plantilla.startsWith("/")) {
+            throw new IllegalArgumentException("La plantilla debe empezar por '/': " + plantilla);
+        }
+        
+        Nodo nodo = raiz;
+        for (String segmento : plantilla.substring(1).split("/", -1)) {
+            if (segmento.startsWith("{") && segmento.endsWith("}")) {
+                nodo = hijo_parametro(nodo, segmento.substring(1, segmento.length() - 1), plantilla);
+            } else {
+                nodo = hijo_literal(nodo, segmento);
+            }
+        }
+        
+        if (nodo.handlers.put(metodo, handler) != null) {
+            throw new IllegalArgumentException("Ruta duplicada: " + metodo + " " + plantilla);
+        }
+        nodo.headers_405 = headers_con_allow(String.join(", ", nodo.handlers.keySet()));
+    }
+    
+    private static Nodo hijo_literal(Nodo nodo, String segmento) {
+        for (Nodo hijo : nodo.hijos_literales) {
+            if (hijo.segmento.equals(segmento)) {
+                return hijo;
+            }
+        }
+        Nodo hijo = new Nodo(segmento);
+        nodo.hijos_literales = Arrays.copyOf(nodo.hijos_literales, nodo.hijos_literales.length + 1);
+        nodo.hijos_literales[nodo.hijos_literales.length - 1] = hijo;
+        return hijo;
+    }
+    
+    private static Nodo hijo_parametro(Nodo nodo, String definicion, String plantilla) {
+        int dos_puntos = definicion.indexOf(':');
+        String nombre = dos_puntos < 0 ? definicion : definicion.substring(0, dos_puntos);
+        String tipo = dos_puntos < 0 ? "string" : definicion.substring(dos_puntos + 1);
+        
+        TipoParametro tipo_parametro;
+        if (tipo.equals("long")) {
+            tipo_parametro = TipoParametro.LONG;
+        } else if (tipo.equals("string")) {
+            tipo_parametro = TipoParametro.TEXTO;
+        } else {
+            throw new IllegalArgumentException("Tipo de parametro desconocido '" + tipo + "' en " + plantilla);
+        }
+        
+        if (nodo.hijo_parametro == null) {
+            nodo.hijo_parametro = new Nodo(null);
+            nodo.hijo_parametro.nombre_parametro = nombre;
+            nodo.hijo_parametro.tipo_parametro = tipo_parametro;
+        } else if (!nodo.hijo_parametro.nombre_parametro.equals(nombre) || nodo.hijo_parametro.tipo_parametro != tipo_parametro) {
+            throw new IllegalArgumentException("Parametro en conflicto con otra ruta: " + plantilla);
+        }
+        return nodo.hijo_parametro;
+    }
+    
+    // busca el handler de la peticion y lo ejecuta, o responde 404/405
+    public RespuestaHTTP despachar(PeticionHTTP peticion) throws Exception {
+        String ruta = peticion.ruta;
+        int fin_ruta = ruta.indexOf('?');
+        if (fin_ruta >= 0) {
+            try {
+                peticion.query = parsear_query(ruta, fin_ruta + 1);
+            } catch (IllegalArgumentException e) {
+                return HttpResponseWriter.crear(400, "Bad Request", HttpResponseWriter.headers_json,
+                    "{\"error\":\"Query string invalida\"}");
+            }
+        } else {
+            fin_ruta = ruta.length();
+        }
+        
+        Nodo nodo = buscar(raiz, ruta, 0, fin_ruta, peticion);
+        if (nodo == null) {
+            return HttpResponseWriter.crear(404, "Not Found", HttpResponseWriter.headers_json,
+                "{\"error\":\"Ruta no encontrada\"}");
+        }
+        
+        Handler handler = nodo.handlers.get(peticion.metodo);
+        if (handler == null) {
+            return HttpResponseWriter.crear(405, "Method Not Allowed", nodo.headers_405,
+                "{\"error\":\"Metodo no permitido\"}");
+        }
+        return handler.manejar(peticion);
+    }
+    
+    // posicion apunta a la '/' que abre el siguiente segmento (o al final de la ruta);
+    // los literales tienen prioridad sobre los parametros
+    private static Nodo buscar(Nodo nodo, String ruta, int posicion, int fin_ruta, PeticionHTTP peticion) {
+        if (posicion == fin_ruta) {
+            return nodo.handlers.isEmpty() ? null : nodo;
+        }
+        if (ruta.charAt(posicion) != '/') {
+            return null;
+        }
+        
+        int inicio = posicion + 1;
+        int fin_segmento = ruta.indexOf('/', inicio);
+        if (fin_segmento < 0 || fin_segmento > fin_ruta) {
+            fin_segmento = fin_ruta;
+        }
+        int longitud = fin_segmento - inicio;
+        
+        for (Nodo hijo : nodo.hijos_literales) {
+            if (hijo.segmento.length() == longitud && ruta.regionMatches(inicio, hijo.segmento, 0, longitud)) {
+                Nodo encontrado = buscar(hijo, ruta, fin_segmento, fin_ruta, peticion);
+                if (encontrado != null) {
+                    return encontrado;
+                }
+            }
+        }
+        
+        Nodo parametro = nodo.hijo_parametro;
+        if (parametro == null || longitud == 0) {
+            return null;
+        }
+        Object valor = parametro.tipo_parametro == TipoParametro.LONG
+            ? parsear_long(ruta, inicio, fin_segmento)
+            : ruta.substring(inicio, fin_segmento);
+        if (valor == null) {
+            return null;
+        }
+        
+        Nodo encontrado = buscar(parametro, ruta, fin_segmento, fin_ruta, peticion);
+        if (encontrado != null) {
+            peticion.poner_parametro(parametro.nombre_parametro, valor);
+        }
+        return encontrado;
+    }
+    
+    // solo digitos y sin desbordamiento; si no, la ruta no coincide
+    private static Long parsear_long(String ruta, int inicio, int fin) {
+        if (fin - inicio > 18) {
+            return null;
+        }
+        long valor = 0;
+        for (int i = inicio; i < fin; i++) {
+            char c = ruta.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+    
+    private static Map<String, String> parsear_query(String ruta, int inicio) {
+        Map<String, String> query = new LinkedHashMap<String, String>();
+        int posicion = inicio;
+        while (posicion < ruta.length()) {
+            int fin = ruta.indexOf('&', posicion);
+            if (fin < 0) {
+                fin = ruta.length();
+            }
+            if (fin > posicion) {
+                int igual = ruta.indexOf('=', posicion);
+                if (igual < 0 || igual > fin) {
+                    query.put(decodificar(ruta.substring(posicion, fin)), "");
+                } else {
+                    query.put(decodificar(ruta.substring(posicion, igual)), decodificar(ruta.substring(igual + 1, fin)));
+                }
+            }
+            posicion = fin + 1;
+        }
+        return query;
+    }
+    
+    private static String decodificar(String texto) {
+        if (texto.indexOf('%') < 0 && texto.indexOf('+') < 0) {
+            return texto;
+        }
+        return URLDecoder.decode(texto, StandardCharsets.UTF_8);
+    }
+    
+    private static byte[] headers_con_allow(String metodos) {
+        byte[] allow = ("Allow: " + metodos + ", OPTIONS\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] headers = Arrays.copyOf(HttpResponseWriter.headers_json, HttpResponseWriter.headers_json.length + allow.length);
+        System.arraycopy(allow, 0, headers, HttpResponseWriter.headers_json.length, allow.length);
+        return headers;
+    }
+}
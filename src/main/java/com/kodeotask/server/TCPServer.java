@@ -1,52 +1,118 @@
 package com.kodeotask.server;
 
 import com.kodeotask.config.DatabaseConfig;
+import com.kodeotask.dao.TaskDAO;
 import com.kodeotask.service.AuthService;
 import com.kodeotask.service.TaskService;
+import com.kodeotask.util.TokenUtil;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // servidor tcp para manejar peticiones http/rest
 public class TCPServer {
     
     private static final int puerto_por_defecto = 8081;
     
+    // modos de ejecucion disponibles
+    public static final String modo_threads = "threads";
+    public static final String modo_nio = "nio";
+    public static final String modo_virtual = "virtual";
+    
     private final int puerto;
+    private final String modo;
     private final AuthService servicio_auth;
     private final TaskService servicio_tareas;
     private final UDPServer servidor_udp;
+    private final RequestProcessor procesador;
+    
+    // configuracion del modo nio
+    private int hilos_io = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private int hilos_workers = Runtime.getRuntime().availableProcessors() * 4;
+    private int capacidad_cola_workers = 1024;
+    
+    // configuracion de conexiones persistentes
+    private int timeout_keep_alive_ms = RequestProcessor.timeout_keep_alive_ms;
+    private int max_peticiones_por_conexion = RequestProcessor.max_peticiones_por_conexion;
     
     private ServerSocket socket_servidor;
+    private ServerSocketChannel canal_servidor;
+    private Selector selector_accept;
+    private final List<NioEventLoop> event_loops = new ArrayList<NioEventLoop>();
     private ExecutorService pool_threads;
-    private boolean ejecutando = false;
+    private volatile boolean ejecutando = false;
     
     public TCPServer(int puerto, UDPServer servidor_udp) {
+        this(puerto, servidor_udp, modo_threads);
+    }
+    
+    public TCPServer(int puerto, UDPServer servidor_udp, String modo) {
         this.puerto = puerto;
+        this.modo = modo;
         this.servicio_auth = new AuthService();
         this.servicio_tareas = new TaskService();
         this.servidor_udp = servidor_udp;
+        this.procesador = new RequestProcessor(servicio_auth, servicio_tareas, servidor_udp);
+    }
+    
+    // configura el numero de hilos de i/o, de workers y la capacidad de la cola del modo nio
+    public void configurar_nio(int hilos_io, int hilos_workers, int capacidad_cola_workers) {
+        if (hilos_io > 0) this.hilos_io = hilos_io;
+        if (hilos_workers > 0) this.hilos_workers = hilos_workers;
+        if (capacidad_cola_workers > 0) this.capacidad_cola_workers = capacidad_cola_workers;
+    }
+    
+    // configura el tiempo maximo de inactividad y el maximo de peticiones por conexion persistente
+    public void configurar_keep_alive(int timeout_ms, int max_peticiones) {
+        if (timeout_ms > 0) this.timeout_keep_alive_ms = timeout_ms;
+        if (max_peticiones > 0) this.max_peticiones_por_conexion = max_peticiones;
     }
     
     // inicia el servidor tcp
     public void start() {
-        pool_threads = Executors.newCachedThreadPool();
+        if (modo.equals(modo_nio)) {
+            start_nio();
+            return;
+        }
+        
+        String descripcion_executor = "thread por conexion (cached pool)";
+        if (modo.equals(modo_virtual)) {
+            pool_threads = crear_executor_virtual();
+            if (pool_threads != null) {
+                descripcion_executor = "virtual thread por conexion";
+            } else {
+                System.err.println("[TCP] Virtual threads no disponibles en Java " +
+                    Runtime.version().feature() + " (requiere Java 21+), usando cached pool");
+            }
+        }
+        if (pool_threads == null) {
+            pool_threads = Executors.newCachedThreadPool();
+        }
         
         try {
             DatabaseConfig.initializeTables();
+            servicio_auth.loadUserNames();
             
             socket_servidor = new ServerSocket(puerto);
             ejecutando = true;
             
-            System.out.println("========================================");
-            System.out.println("  SERVIDOR TCP - KodeoTask");
-            System.out.println("  Puerto: " + puerto);
-            System.out.println("  Estado: ACTIVO");
-            System.out.println("========================================");
-            System.out.println("Esperando conexiones...\n");
+            imprimir_banner(descripcion_executor);
             
             while (ejecutando) {
                 try {
@@ -54,7 +120,7 @@ public class TCPServer {
                     System.out.println("[TCP] Cliente conectado: " + socket_cliente.getRemoteSocketAddress());
                     
                     TCPClientHandler handler = new TCPClientHandler(
-                        socket_cliente, servicio_auth, servicio_tareas, servidor_udp
+                        socket_cliente, procesador, timeout_keep_alive_ms, max_peticiones_por_conexion
                     );
                     pool_threads.execute(handler);
                     
@@ -71,6 +137,93 @@ public class TCPServer {
         }
     }
     
+    // inicia el servidor en modo nio: un selector de accept, pocos hilos de i/o y un pool acotado de workers
+    private void start_nio() {
+        pool_threads = new ThreadPoolExecutor(
+            hilos_workers, hilos_workers, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(capacidad_cola_workers),
+            crear_thread_factory("tcp-worker")
+        );
+        
+        try {
+            DatabaseConfig.initializeTables();
+            servicio_auth.loadUserNames();
+            
+            for (int i = 0; i < hilos_io; i++) {
+                NioEventLoop loop = new NioEventLoop("tcp-io-" + i, procesador, pool_threads,
+                    timeout_keep_alive_ms, max_peticiones_por_conexion);
+                event_loops.add(loop);
+                Thread thread_io = new Thread(loop, "tcp-io-" + i);
+                thread_io.setDaemon(true);
+                thread_io.start();
+            }
+            
+            canal_servidor = ServerSocketChannel.open();
+            canal_servidor.bind(new InetSocketAddress(puerto));
+            canal_servidor.configureBlocking(false);
+            selector_accept = Selector.open();
+            canal_servidor.register(selector_accept, SelectionKey.OP_ACCEPT);
+            ejecutando = true;
+            
+            imprimir_banner("nio (" + hilos_io + " hilos i/o, " + hilos_workers + " workers, cola " + capacidad_cola_workers + ")");
+            
+            int siguiente = 0;
+            while (ejecutando) {
+                try {
+                    selector_accept.select();
+                    selector_accept.selectedKeys().clear();
+                    
+                    SocketChannel canal_cliente;
+                    while ((canal_cliente = canal_servidor.accept()) != null) {
+                        System.out.println("[TCP] Cliente conectado: " + canal_cliente.getRemoteAddress());
+                        event_loops.get(siguiente).registrar(canal_cliente);
+                        siguiente = (siguiente + 1) % event_loops.size();
+                    }
+                } catch (IOException e) {
+                    if (ejecutando) {
+                        System.err.println("[TCP] Error al aceptar cliente: " + e.getMessage());
+                    }
+                }
+            }
+            
+        } catch (Exception e) {
+            System.err.println("[TCP] Error al iniciar servidor: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private void imprimir_banner(String descripcion_modo) {
+        System.out.println("========================================");
+        System.out.println("  SERVIDOR TCP - KodeoTask");
+        System.out.println("  Puerto: " + puerto);
+        System.out.println("  Modo: " + descripcion_modo);
+        System.out.println("  Keep-alive: " + (timeout_keep_alive_ms / 1000) + "s, max " + max_peticiones_por_conexion + " peticiones");
+        System.out.println("  Estado: ACTIVO");
+        System.out.println("========================================");
+        System.out.println("Esperando conexiones...\n");
+    }
+    
+    // crea Executors.newVirtualThreadPerTaskExecutor() si el runtime lo soporta (Java 21+);
+    // se resuelve por reflexion para que el proyecto siga compilando con Java 17
+    private static ExecutorService crear_executor_virtual() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    
+    private static ThreadFactory crear_thread_factory(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, prefijo + "-" + contador.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+    
     // detiene el servidor tcp
     public void stop() {
         ejecutando = false;
@@ -79,10 +232,20 @@ public class TCPServer {
             if (socket_servidor != null && !socket_servidor.isClosed()) {
                 socket_servidor.close();
             }
+            if (canal_servidor != null && canal_servidor.isOpen()) {
+                canal_servidor.close();
+            }
+            if (selector_accept != null) {
+                selector_accept.close();
+            }
         } catch (IOException e) {
             System.err.println("[TCP] Error al cerrar socket: " + e.getMessage());
         }
         
+        for (NioEventLoop loop : event_loops) {
+            loop.stop();
+        }
+        
         if (pool_threads != null) {
             pool_threads.shutdown();
         }
@@ -91,11 +254,41 @@ public class TCPServer {
         System.out.println("[TCP] Servidor detenido");
     }
     
+    // muestra el plan de las consultas de tareas visibles (lista completa y primera pagina);
+    // devuelve false si alguna tabla se recorre completa (falta un indice o no se aplico la migracion)
+    private static boolean verificar_planes_consultas() {
+        try {
+            List<String> plan = new TaskDAO().explainFindByUserId(1L);
+            System.out.println("[DB] EXPLAIN consultas de tareas visibles:");
+            boolean correcto = true;
+            for (String linea : plan) {
+                System.out.println("  " + linea);
+                if (linea.startsWith("AVISO")) {
+                    correcto = false;
+                }
+            }
+            System.out.println(correcto ? "[DB] Plan correcto: todas las ramas usan indices"
+                : "[DB] Hay tablas recorridas completas; aplicar sql/add_visible_tasks_indexes.sql");
+            return correcto;
+        } catch (SQLException e) {
+            System.err.println("[DB] Error al obtener el plan: " + e.getMessage());
+            return false;
+        } finally {
+            DatabaseConfig.closeConnection();
+        }
+    }
+    
     // metodo principal para ejecutar el servidor
     public static void main(String[] args) {
         int puerto = puerto_por_defecto;
         int puerto_udp = UDPServer.puerto_por_defecto;
         boolean solo_tcp = false;
+        String modo = modo_threads;
+        int hilos_io = 0;
+        int hilos_workers = 0;
+        int capacidad_cola = 0;
+        int timeout_keep_alive = 0;
+        int max_peticiones = 0;
         
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("--port") && i + 1 < args.length) {
@@ -104,6 +297,25 @@ public class TCPServer {
                 puerto_udp = Integer.parseInt(args[++i]);
             } else if (args[i].equals("--tcp-only") || args[i].equals("--no-udp")) {
                 solo_tcp = true;
+            } else if (args[i].equals("--nio")) {
+                modo = modo_nio;
+            } else if (args[i].equals("--virtual-threads")) {
+                modo = modo_virtual;
+            } else if (args[i].equals("--io-threads") && i + 1 < args.length) {
+                hilos_io = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--workers") && i + 1 < args.length) {
+                hilos_workers = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--worker-queue") && i + 1 < args.length) {
+                capacidad_cola = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--keep-alive-timeout") && i + 1 < args.length) {
+                timeout_keep_alive = Integer.parseInt(args[++i]) * 1000;
+            } else if (args[i].equals("--max-requests") && i + 1 < args.length) {
+                max_peticiones = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--explain-queries")) {
+                System.exit(verificar_planes_consultas() ? 0 : 1);
+            } else if (args[i].equals("--benchmark-tokens")) {
+                System.out.println("[AUTH] Verificacion de tokens por firma: " + TokenUtil.benchmarkVerification(1_000_000));
+                System.exit(0);
             }
         }
         
@@ -134,7 +346,9 @@ public class TCPServer {
             servidor_udp = null;
         }
         
-        TCPServer servidor_tcp = new TCPServer(puerto, servidor_udp);
+        TCPServer servidor_tcp = new TCPServer(puerto, servidor_udp, modo);
+        servidor_tcp.configurar_nio(hilos_io, hilos_workers, capacidad_cola);
+        servidor_tcp.configurar_keep_alive(timeout_keep_alive, max_peticiones);
         
         final UDPServer servidor_udp_final = servidor_udp;
         Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
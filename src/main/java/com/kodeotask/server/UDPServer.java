@@ -7,7 +7,11 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -138,6 +142,23 @@ public class UDPServer {
             return;
         }
         
+        enviar_notificacion(id_usuario, tipo, notificacion(tipo, tarea));
+    }
+    
+    // envia una notificacion a todos los usuarios registrados; el mensaje se arma una sola vez
+    public void broadcast(String tipo, Task tarea) {
+        if (socket == null || !ejecutando) {
+            System.out.println("[UDP] Servidor UDP no disponible - tipo: " + tipo + ", broadcast");
+            return;
+        }
+        
+        byte[] datos = notificacion(tipo, tarea);
+        for (Long id_usuario : clientes_registrados.keySet()) {
+            enviar_notificacion(id_usuario, tipo, datos);
+        }
+    }
+    
+    private void enviar_notificacion(Long id_usuario, String tipo, byte[] datos) {
         InfoCliente cliente = clientes_registrados.get(id_usuario);
         if (cliente == null) {
             System.out.println("[UDP] Usuario " + id_usuario + " no registrado - tipo: " + tipo);
@@ -145,19 +166,6 @@ public class UDPServer {
         }
         
         try {
-            Map<String, Object> notificacion = new HashMap<String, Object>();
-            notificacion.put("type", tipo);
-            notificacion.put("timestamp", System.currentTimeMillis());
-            
-            if (tarea != null) {
-                notificacion.put("taskId", tarea.getId());
-                notificacion.put("taskTitle", tarea.getTitle());
-                notificacion.put("task", tarea.toJson());
-            }
-            
-            String json_notificacion = JsonUtil.toJson(notificacion);
-            byte[] datos = json_notificacion.getBytes();
-            
             DatagramPacket paquete = new DatagramPacket(
                 datos, datos.length, cliente.direccion, cliente.puerto
             );
@@ -171,11 +179,89 @@ public class UDPServer {
         }
     }
     
-    // envia una notificacion a todos los usuarios registrados
-    public void broadcast(String tipo, Task tarea) {
-        for (Map.Entry<Long, InfoCliente> entrada : clientes_registrados.entrySet()) {
-            sendNotification(entrada.getKey(), tipo, tarea);
+    // {"type":...,"timestamp":...,"taskId":...,"taskTitle":...,"task":"<json de la tarea como string>"} en utf-8.
+    // el json de la tarea sale ya escapado del cache de JsonUtil, sin volver a serializarla
+    private static byte[] notificacion(String tipo, Task tarea) {
+        StringBuilder inicio = new StringBuilder("{\"type\":\"").append(JsonUtil.escapeJson(tipo))
+            .append("\",\"timestamp\":").append(System.currentTimeMillis());
+        if (tarea == null) {
+            return inicio.append("}").toString().getBytes(StandardCharsets.UTF_8);
+        }
+        
+        inicio.append(",\"taskId\":").append(tarea.getId());
+        inicio.append(",\"taskTitle\":").append(tarea.getTitle() != null ? "\"" + JsonUtil.escapeJson(tarea.getTitle()) + "\"" : "null");
+        inicio.append(",\"task\":\"");
+        byte[] cabecera = inicio.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] json_tarea = JsonUtil.taskToEscapedJsonBytes(tarea);
+        
+        byte[] datos = new byte[cabecera.length + json_tarea.length + 2];
+        System.arraycopy(cabecera, 0, datos, 0, cabecera.length);
+        System.arraycopy(json_tarea, 0, datos, cabecera.length, json_tarea.length);
+        datos[datos.length - 2] = '"';
+        datos[datos.length - 1] = '}';
+        return datos;
+    }
+    
+    // notificaciones de un lote de operaciones: cada destinatario recibe un unico mensaje "tasks_bulk"
+    // con los ids creados, actualizados y eliminados y los que se le asignaron, en lugar de uno por tarea.
+    // como con las operaciones individuales, si alguna tarea tiene asignados se avisa a todos los registrados
+    public void sendBulkNotifications(Long id_usuario, List<Task> creadas, List<Task> actualizadas, List<Long> eliminadas) {
+        if (socket == null || !ejecutando) {
+            System.out.println("[UDP] Servidor UDP no disponible - tipo: tasks_bulk, userId: " + id_usuario);
+            return;
+        }
+        
+        Map<Long, List<Long>> asignadas_por_usuario = new HashMap<Long, List<Long>>();
+        for (List<Task> tareas : List.of(creadas, actualizadas)) {
+            for (Task tarea : tareas) {
+                for (Long id_asignado : tarea.getAssignedUsers()) {
+                    if (!id_asignado.equals(id_usuario)) {
+                        asignadas_por_usuario.computeIfAbsent(id_asignado, k -> new ArrayList<Long>()).add(tarea.getId());
+                    }
+                }
+            }
+        }
+        
+        String comun = "\"created\":" + ids_json(creadas) + ",\"updated\":" + ids_json(actualizadas)
+            + ",\"deleted\":" + eliminadas;
+        Collection<Long> destinatarios = asignadas_por_usuario.isEmpty()
+            ? List.of(id_usuario) : clientes_registrados.keySet();
+        
+        int enviadas = 0;
+        for (Long destinatario : destinatarios) {
+            InfoCliente cliente = clientes_registrados.get(destinatario);
+            if (cliente == null) {
+                continue;
+            }
+            String mensaje = "{\"type\":\"tasks_bulk\",\"timestamp\":" + System.currentTimeMillis() + "," + comun
+                + ",\"assigned\":" + asignadas_por_usuario.getOrDefault(destinatario, List.of()) + "}";
+            enviar_mensaje(mensaje, cliente.direccion, cliente.puerto);
+            enviadas++;
+        }
+        System.out.println("[UDP] Notificacion de lote enviada a " + enviadas + " usuarios");
+    }
+    
+    // progreso de una importacion de tareas (contadores en json) para el usuario que la lanzo
+    public void sendImportProgress(Long id_usuario, String progreso_json) {
+        if (socket == null || !ejecutando) {
+            return;
+        }
+        InfoCliente cliente = clientes_registrados.get(id_usuario);
+        if (cliente == null) {
+            return;
+        }
+        String mensaje = "{\"type\":\"tasks_import_progress\",\"timestamp\":" + System.currentTimeMillis()
+            + ",\"progress\":" + progreso_json + "}";
+        enviar_mensaje(mensaje, cliente.direccion, cliente.puerto);
+    }
+    
+    private static String ids_json(List<Task> tareas) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < tareas.size(); i++) {
+            if (i > 0) sb.append(",");
+            sb.append(tareas.get(i).getId());
         }
+        return sb.append("]").toString();
     }
     
     // desregistra un cliente
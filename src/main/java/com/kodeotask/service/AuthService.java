@@ -1,12 +1,14 @@
 package com.kodeotask.service;
 
 import com.kodeotask.dao.UserDAO;
+import com.kodeotask.dao.UserNameFilter;
 import com.kodeotask.model.User;
 import com.kodeotask.util.PasswordUtil;
 import com.kodeotask.util.TokenUtil;
 
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
@@ -15,32 +17,32 @@ import java.util.Optional;
  */
 public class AuthService {
     
+    /**
+     * hilos y capacidad de cola del pool de hashing de contraseñas (propiedad de sistema
+     * kodeotask.password.queue para la cola)
+     */
+    private static final int HASHING_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int HASHING_QUEUE = Integer.getInteger("kodeotask.password.queue", 64);
+    
     private final UserDAO userDAO;
+    private final PasswordHasher passwordHasher;
     
     public AuthService() {
         this.userDAO = new UserDAO();
+        this.passwordHasher = new PasswordHasher(HASHING_THREADS, HASHING_QUEUE);
     }
     
     /**
-     * registra un nuevo usuario
+     * registra un nuevo usuario. las restricciones únicas de la tabla deciden los duplicados con
+     * un solo INSERT (DuplicateUserException), sin consultar antes si existen: el filtro de
+     * nombres solo sabe decir que un nombre está libre, y una consulta previa volvería a abrir la
+     * carrera entre comprobar e insertar
      */
     public Map<String, Object> register(String username, String email, String password, 
                                         String firstName, String lastName) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            if (userDAO.existsByUsername(username)) {
-                response.put("success", false);
-                response.put("message", "El nombre de usuario ya existe");
-                return response;
-            }
-            
-            if (userDAO.existsByEmail(email)) {
-                response.put("success", false);
-                response.put("message", "El email ya está registrado");
-                return response;
-            }
-            
             if (password == null || password.length() < 6) {
                 response.put("success", false);
                 response.put("message", "La contraseña debe tener al menos 6 caracteres");
@@ -50,7 +52,7 @@ public class AuthService {
             User user = new User();
             user.setUsername(username);
             user.setEmail(email);
-            user.setPassword(PasswordUtil.hashPassword(password));
+            user.setPassword(passwordHasher.hash(password));
             user.setFirstName(firstName);
             user.setLastName(lastName);
             
@@ -60,14 +62,52 @@ public class AuthService {
             response.put("message", "Usuario registrado correctamente");
             response.put("userId", user.getId());
             
+        } catch (UserDAO.DuplicateUserException e) {
+            return duplicate(e.isEmail());
         } catch (SQLException e) {
             response.put("success", false);
             response.put("message", "Error al registrar usuario: " + e.getMessage());
+        } catch (PasswordHasher.SaturatedException e) {
+            return busy(e);
         }
         
         return response;
     }
     
+    private static Map<String, Object> duplicate(boolean email) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", email ? "El email ya está registrado" : "El nombre de usuario ya existe");
+        return response;
+    }
+    
+    /**
+     * true si el username está libre (orientativo: el registro lo confirma con el INSERT)
+     */
+    public boolean isUsernameAvailable(String username) throws SQLException {
+        return userDAO.isUsernameAvailable(username);
+    }
+    
+    /**
+     * true si el email está libre (orientativo, como isUsernameAvailable)
+     */
+    public boolean isEmailAvailable(String email) throws SQLException {
+        return userDAO.isEmailAvailable(email);
+    }
+    
+    /**
+     * llena el filtro de nombres con los usuarios existentes; si falla, la disponibilidad se
+     * sigue respondiendo consultando la base de datos
+     */
+    public void loadUserNames() {
+        try {
+            int count = UserNameFilter.getInstance().load();
+            System.out.println("[AUTH] Filtro de nombres cargado: " + count + " usuarios");
+        } catch (SQLException e) {
+            System.err.println("[AUTH] No se pudo cargar el filtro de nombres: " + e.getMessage());
+        }
+    }
+    
     /**
      * inicia sesión de un usuario
      */
@@ -85,12 +125,16 @@ public class AuthService {
             
             User user = userOpt.get();
             
-            if (!PasswordUtil.verifyPassword(password, user.getPassword())) {
+            if (!passwordHasher.verify(password, user.getPassword())) {
                 response.put("success", false);
                 response.put("message", "Contraseña incorrecta");
                 return response;
             }
             
+            if (PasswordUtil.needsRehash(user.getPassword())) {
+                rehash(user, password);
+            }
+            
             String token = TokenUtil.generateToken(user.getId(), user.getUsername());
             
             response.put("success", true);
@@ -104,11 +148,46 @@ public class AuthService {
         } catch (SQLException e) {
             response.put("success", false);
             response.put("message", "Error al iniciar sesión: " + e.getMessage());
+        } catch (PasswordHasher.SaturatedException e) {
+            return busy(e);
         }
         
         return response;
     }
     
+    /**
+     * guarda la contraseña con el KDF y coste actuales tras un login correcto; si falla se
+     * reintenta en el siguiente login
+     */
+    private void rehash(User user, String password) {
+        try {
+            userDAO.updatePassword(user.getId(), passwordHasher.hash(password));
+        } catch (SQLException | PasswordHasher.SaturatedException e) {
+            System.err.println("No se pudo actualizar el hash del usuario " + user.getId() + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * respuesta cuando el pool de hashing está saturado (busy: el servidor responde 503)
+     */
+    private static Map<String, Object> busy(PasswordHasher.SaturatedException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("busy", true);
+        response.put("message", e.getMessage());
+        return response;
+    }
+    
+    /**
+     * métricas del pool de hashing (espera en cola, tiempo de hash y rechazos) y del filtro de nombres
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("passwordHashing", passwordHasher.stats());
+        stats.put("userNames", UserNameFilter.getInstance().stats());
+        return stats;
+    }
+    
     /**
      * valida un token y devuelve el userId
      */
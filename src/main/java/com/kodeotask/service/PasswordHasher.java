@@ -0,0 +1,137 @@
+package com.kodeotask.service;
+
+import com.kodeotask.util.PasswordUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ejecuta el hashing y la verificación de contraseñas en un pool propio, de tantos hilos como
+ * CPUs y con cola acotada: una ráfaga de logins ocupa ese pool y no los hilos de peticiones.
+ * con la cola llena la tarea se rechaza enseguida (SaturatedException) en lugar de esperar
+ */
+final class PasswordHasher {
+    
+    /**
+     * el pool y su cola están llenos
+     */
+    static final class SaturatedException extends Exception {
+        private static final long serialVersionUID = 1L;
+        
+        SaturatedException() {
+            super("Servidor ocupado, intenta de nuevo en unos segundos");
+        }
+    }
+    
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong hashNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+    
+    PasswordHasher(int threads, int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity),
+            r -> {
+                Thread t = new Thread(r, "password-hasher-" + counter.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        );
+    }
+    
+    /**
+     * hash de una contraseña nueva
+     */
+    String hash(String password) throws SaturatedException {
+        return run(() -> PasswordUtil.hashPassword(password));
+    }
+    
+    /**
+     * verifica una contraseña contra su hash almacenado
+     */
+    boolean verify(String password, String storedHash) throws SaturatedException {
+        return run(() -> PasswordUtil.verifyPassword(password, storedHash));
+    }
+    
+    /**
+     * tareas completadas y rechazadas, espera en cola y tiempo de hash (medio y máximo, en ms)
+     */
+    Map<String, Object> stats() {
+        long done = completed.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", "passwordHashing");
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queued", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("iterations", PasswordUtil.getIterations());
+        stats.put("completed", done);
+        stats.put("rejected", rejected.get());
+        stats.put("avgQueueWaitMs", done > 0 ? millis(queueWaitNanos.get() / done) : 0.0);
+        stats.put("maxQueueWaitMs", millis(maxQueueWaitNanos.get()));
+        stats.put("avgHashMs", done > 0 ? millis(hashNanos.get() / done) : 0.0);
+        stats.put("maxHashMs", millis(maxHashNanos.get()));
+        return stats;
+    }
+    
+    private <T> T run(Callable<T> task) throws SaturatedException {
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long started = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    record(started - submitted, System.nanoTime() - started);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new SaturatedException();
+        }
+        
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando el hash de la contraseña", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+    
+    private void record(long waitNanos, long elapsedNanos) {
+        completed.incrementAndGet();
+        queueWaitNanos.addAndGet(waitNanos);
+        maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        hashNanos.addAndGet(elapsedNanos);
+        maxHashNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+    
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -2,21 +2,98 @@ package com.kodeotask.service;
 
 import com.kodeotask.dao.TaskDAO;
 import com.kodeotask.model.Task;
+import com.kodeotask.model.TaskBulkOperation;
+import com.kodeotask.model.TaskImportProgress;
+import com.kodeotask.model.TaskImportRecord;
+import com.kodeotask.model.TaskPage;
+import com.kodeotask.model.TaskPatch;
+import com.kodeotask.model.TaskPatchResult;
+import com.kodeotask.model.TaskQuery;
 import com.kodeotask.model.TaskStatus;
+import com.kodeotask.util.BoundedCache;
+import com.kodeotask.util.JsonUtil;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * servicio de gestión de tareas
  */
 public class TaskService {
     
+    /**
+     * límites del caché de tareas por id
+     */
+    private static final int TASK_CACHE_MAX_ENTRIES = 10_000;
+    private static final long TASK_CACHE_TTL_MILLIS = 5 * 60 * 1000;
+    
+    /**
+     * límites del caché de listas de tareas visibles por usuario
+     */
+    private static final int LIST_CACHE_MAX_ENTRIES = 1000;
+    private static final long LIST_CACHE_TTL_MILLIS = 5 * 60 * 1000;
+    
     private final TaskDAO taskDAO;
     
+    /**
+     * tareas leídas por id (getTaskById, updateTask); toda escritura sobre una tarea la
+     * invalida y el TTL acota lo que tarda en verse un cambio hecho fuera de este servicio
+     * (p. ej. el nombre de un usuario asignado). guarda copias: nadie modifica las cacheadas
+     */
+    private final BoundedCache<Long, Task> taskCache =
+        new BoundedCache<>("tasks", TASK_CACHE_MAX_ENTRIES, TASK_CACHE_TTL_MILLIS);
+    
+    /**
+     * ids de las tareas visibles de cada usuario (GET /api/tasks sin filtros), en el orden de
+     * findByUserId; las tareas se toman de taskCache. cada entrada guarda la versión del
+     * usuario con que se construyó y deja de valer en cuanto esa versión cambia
+     */
+    private final BoundedCache<Long, VisibleTasks> visibleTasksCache =
+        new BoundedCache<>("visibleTasks", LIST_CACHE_MAX_ENTRIES, LIST_CACHE_TTL_MILLIS);
+    
+    /**
+     * versión de la lista visible de cada usuario: aumenta cada vez que cambia una tarea que
+     * creó o que tiene asignada (antes o después del cambio)
+     */
+    private final ConcurrentHashMap<Long, AtomicLong> listVersions = new ConcurrentHashMap<>();
+    
+    /**
+     * versión común a todos los usuarios, para cambios cuyos afectados no se conocen aquí
+     * (las importaciones resuelven los asignados en el DAO)
+     */
+    private final AtomicLong listEpoch = new AtomicLong();
+    
+    private static class VisibleTasks {
+        final long version;
+        final long epoch;
+        final List<Long> taskIds;
+        
+        VisibleTasks(long version, long epoch, List<Long> taskIds) {
+            this.version = version;
+            this.epoch = epoch;
+            this.taskIds = taskIds;
+        }
+    }
+    
     public TaskService() {
         this.taskDAO = new TaskDAO();
     }
@@ -38,27 +115,116 @@ public class TaskService {
         
         Task created = taskDAO.create(task);
         System.out.println("[TASK SERVICE] ✓ Tarea creada exitosamente - ID: " + created.getId());
+        bumpListVersions(audienceOf(created, new HashSet<>()));
         return created;
     }
     
     /**
-     * obtiene todas las tareas de un usuario
+     * obtiene todas las tareas de un usuario. si la lista de ids cacheada sigue en la versión
+     * actual del usuario, solo se leen de la base de datos las tareas que no están en taskCache
      */
     public List<Task> getUserTasks(Long userId) {
         try {
-            return taskDAO.findByUserId(userId);
+            long version = listVersion(userId);
+            long epoch = listEpoch.get();
+            VisibleTasks cached = visibleTasksCache.get(userId);
+            if (cached != null && cached.version == version && cached.epoch == epoch) {
+                Map<Long, Task> found = findTasks(cached.taskIds);
+                if (found.size() == cached.taskIds.size()) {
+                    return new ArrayList<>(found.values());
+                }
+            }
+            
+            long loadStamp = visibleTasksCache.startLoad();
+            long taskLoadStamp = taskCache.startLoad();
+            List<Task> tasks = taskDAO.findByUserId(userId);
+            List<Long> taskIds = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                taskIds.add(task.getId());
+                taskCache.put(task.getId(), new Task(task), taskLoadStamp);
+            }
+            visibleTasksCache.put(userId, new VisibleTasks(version, epoch, List.copyOf(taskIds)), loadStamp);
+            return tasks;
+        } catch (SQLException e) {
+            System.err.println("Error al obtener tareas: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * obtiene las tareas de un usuario que cumplen los filtros de la consulta, sin paginar
+     */
+    public List<Task> getUserTasks(Long userId, TaskQuery query) {
+        try {
+            return taskDAO.findByUserQuery(userId, query);
         } catch (SQLException e) {
             System.err.println("Error al obtener tareas: " + e.getMessage());
             return new ArrayList<>();
         }
     }
     
+    /**
+     * obtiene una página de las tareas de un usuario
+     *
+     * cursor es el nextCursor de la página anterior (null para la primera) y solo es válido
+     * con el mismo orden con que se generó. se pide una fila de más para saber si hay otra
+     * página sin hacer un COUNT.
+     *
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public TaskPage getUserTasksPage(Long userId, TaskQuery query, String cursor) {
+        int limit = query.getLimit();
+        if (cursor != null) {
+            applyCursor(query, cursor);
+        }
+        
+        try {
+            query.setLimit(limit + 1);
+            List<Task> tasks = taskDAO.findByUserQuery(userId, query);
+            String nextCursor = null;
+            if (tasks.size() > limit) {
+                tasks = new ArrayList<>(tasks.subList(0, limit));
+                nextCursor = encodeCursor(query.getSort(), tasks.get(limit - 1));
+            }
+            return new TaskPage(tasks, nextCursor, limit);
+        } catch (SQLException e) {
+            System.err.println("Error al obtener tareas: " + e.getMessage());
+            return new TaskPage(new ArrayList<>(), null, limit);
+        } finally {
+            query.setLimit(limit);
+        }
+    }
+    
+    // cursor = base64url("<c|d>|<valor de orden>|<id>"); el valor vacío representa due_date null
+    private static String encodeCursor(TaskQuery.Sort sort, Task last) {
+        LocalDateTime value = sort == TaskQuery.Sort.DUE_DATE ? last.getDueDate() : last.getCreatedAt();
+        String key = (sort == TaskQuery.Sort.DUE_DATE ? "d|" : "c|") + (value != null ? value.toString() : "") + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static void applyCursor(TaskQuery query, String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            String expectedSort = query.getSort() == TaskQuery.Sort.DUE_DATE ? "d" : "c";
+            if (parts.length != 3 || !parts[0].equals(expectedSort)) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            LocalDateTime value = parts[1].isEmpty() ? null : LocalDateTime.parse(parts[1]);
+            if (value == null && query.getSort() != TaskQuery.Sort.DUE_DATE) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            query.setAfter(value, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+    
     /**
      * obtiene una tarea por ID
      */
     public Optional<Task> getTaskById(Long taskId, Long userId) {
         try {
-            Optional<Task> taskOpt = taskDAO.findById(taskId);
+            Optional<Task> taskOpt = findTask(taskId);
             if (taskOpt.isPresent()) {
                 Task task = taskOpt.get();
                 if (task.getCreatedBy().equals(userId) || 
@@ -79,7 +245,7 @@ public class TaskService {
     public Optional<Task> updateTask(Long taskId, Task updatedTask, Long userId) {
         try {
             System.out.println("[TASK SERVICE] Actualizando tarea ID: " + taskId + " - Usuario: " + userId);
-            Optional<Task> existingTaskOpt = taskDAO.findById(taskId);
+            Optional<Task> existingTaskOpt = findTask(taskId);
             if (existingTaskOpt.isEmpty()) {
                 System.out.println("[TASK SERVICE] ✗ Tarea no encontrada - ID: " + taskId);
                 return Optional.empty();
@@ -91,6 +257,7 @@ public class TaskService {
                 System.out.println("[TASK SERVICE] ✗ Usuario no autorizado - Usuario: " + userId + ", Creador: " + existingTask.getCreatedBy());
                 return Optional.empty();
             }
+            Set<Long> audience = audienceOf(existingTask, new HashSet<>());
             
             boolean assignmentChanged = false;
             if (updatedTask.getAssignedUsers() != null) {
@@ -140,7 +307,13 @@ public class TaskService {
             }
             
             existingTask.setUpdatedAt(LocalDateTime.now());
-            Task updated = taskDAO.update(existingTask);
+            Task updated;
+            try {
+                updated = taskDAO.update(existingTask);
+            } finally {
+                taskCache.invalidate(taskId);
+            }
+            bumpListVersions(audienceOf(updated, audience));
             System.out.println("[TASK SERVICE] ✓ Tarea actualizada exitosamente - ID: " + taskId);
             
             if (assignmentChanged) {
@@ -156,18 +329,354 @@ public class TaskService {
         }
     }
     
+    /**
+     * recorre las tareas visibles del usuario que cumplen la consulta, entregándolas al
+     * handler a medida que se leen de la base de datos
+     */
+    public void exportUserTasks(Long userId, TaskQuery query, TaskDAO.TaskRowHandler handler) throws SQLException, IOException {
+        taskDAO.streamByUserQuery(userId, query, handler);
+    }
+    
+    /**
+     * aplica cambios parciales a una tarea del usuario con un único UPDATE condicional;
+     * si el PATCH trae version y la tarea cambió desde entonces devuelve CONFLICT
+     */
+    public TaskPatchResult patchTask(Long taskId, TaskPatch patch, Long userId) throws SQLException {
+        System.out.println("[TASK SERVICE] PATCH tarea ID: " + taskId + " - Usuario: " + userId);
+        // si cambian los asignados, los que dejan de estarlo también ven cambiar su lista
+        Set<Long> audience = new HashSet<>();
+        if (patch.hasAssignedTo() || patch.getAssignedUsers() != null) {
+            findTask(taskId).ifPresent(before -> audienceOf(before, audience));
+        }
+        TaskPatchResult result;
+        try {
+            result = taskDAO.patch(taskId, userId, patch);
+        } finally {
+            taskCache.invalidate(taskId);
+        }
+        if (result.getOutcome() == TaskPatchResult.Outcome.UPDATED) {
+            bumpListVersions(audienceOf(result.getTask(), audience));
+        }
+        System.out.println("[TASK SERVICE] Resultado PATCH tarea ID " + taskId + ": " + result.getOutcome());
+        return result;
+    }
+    
+    /**
+     * ejecuta un lote de altas, cambios y bajas del usuario en una sola transacción; cada
+     * operación queda con su propio resultado
+     */
+    public List<TaskBulkOperation> executeBulk(Long userId, List<TaskBulkOperation> operations) throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> previousIds = new ArrayList<>();
+        for (TaskBulkOperation operation : operations) {
+            if (!operation.isPending()) {
+                continue;
+            }
+            if (operation.getType() == TaskBulkOperation.Type.DELETE
+                || (operation.getType() == TaskBulkOperation.Type.UPDATE
+                    && (operation.getPatch().hasAssignedTo() || operation.getPatch().getAssignedUsers() != null))) {
+                previousIds.add(operation.getTaskId());
+            }
+            if (operation.getType() == TaskBulkOperation.Type.CREATE) {
+                Task task = operation.getTask();
+                task.setCreatedBy(userId);
+                if (task.getStatus() == null) {
+                    task.setStatus(TaskStatus.PENDING);
+                }
+                task.setCreatedAt(now);
+            }
+        }
+        
+        // estado previo de las tareas que se eliminan o cambian de asignados
+        Map<Long, Task> previous = findTasks(previousIds);
+        
+        try {
+            taskDAO.executeBulk(userId, operations);
+        } finally {
+            List<Long> changedIds = new ArrayList<>();
+            for (TaskBulkOperation operation : operations) {
+                if (operation.getType() != TaskBulkOperation.Type.CREATE && operation.getTaskId() != null) {
+                    changedIds.add(operation.getTaskId());
+                }
+            }
+            taskCache.invalidateAll(changedIds);
+        }
+        
+        int succeeded = 0;
+        Set<Long> audience = new HashSet<>();
+        for (TaskBulkOperation operation : operations) {
+            if (operation.isSucceeded()) {
+                succeeded++;
+                Task before = previous.get(operation.getTaskId());
+                if (before != null) {
+                    audienceOf(before, audience);
+                }
+                if (operation.getResult() != null) {
+                    audienceOf(operation.getResult(), audience);
+                }
+            }
+        }
+        if (succeeded > 0) {
+            audience.add(userId);
+            bumpListVersions(audience);
+        }
+        System.out.println("[TASK SERVICE] Lote de " + operations.size() + " operaciones - Usuario: " + userId
+            + " - correctas: " + succeeded + ", fallidas: " + (operations.size() - succeeded));
+        return operations;
+    }
+    
+    /**
+     * longitud máxima de una línea de importación; las más largas se descartan sin leerlas enteras en memoria
+     */
+    private static final int MAX_IMPORT_LINE_LENGTH = 1024 * 1024;
+    
+    /**
+     * importa tareas del usuario desde un cuerpo NDJSON (una tarea por línea) que se lee y
+     * parsea a medida que llega. las líneas inválidas se cuentan como fallidas y la
+     * importación sigue; onCommit recibe el progreso tras cada commit. si la base de datos o
+     * la lectura del cuerpo fallan, la importación se detiene conservando lo ya confirmado
+     */
+    public TaskImportProgress importTasks(Long userId, InputStream body, int batchSize, int commitInterval,
+                                          Consumer<TaskImportProgress> onCommit) {
+        System.out.println("[TASK SERVICE] Importando tareas - Usuario: " + userId + ", batch: " + batchSize
+            + ", commit cada: " + commitInterval);
+        TaskImportProgress progress = new TaskImportProgress();
+        LineReader lines = new LineReader(new InputStreamReader(body, StandardCharsets.UTF_8), MAX_IMPORT_LINE_LENGTH);
+        
+        TaskDAO.TaskImportSource source = new TaskDAO.TaskImportSource() {
+            public TaskImportRecord next() throws IOException {
+                String line;
+                while ((line = lines.next()) != null) {
+                    progress.lineRead();
+                    if (lines.wasTruncated()) {
+                        progress.fail(progress.getLines(), "Línea demasiado larga");
+                        continue;
+                    }
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    
+                    TaskImportRecord record;
+                    try {
+                        record = JsonUtil.parseTaskImport(line);
+                    } catch (IllegalArgumentException e) {
+                        progress.fail(progress.getLines(), e.getMessage());
+                        continue;
+                    }
+                    record.setLine(progress.getLines());
+                    Task task = record.getTask();
+                    task.setCreatedBy(userId);
+                    if (task.getStatus() == null) {
+                        task.setStatus(TaskStatus.PENDING);
+                    }
+                    task.setCreatedAt(LocalDateTime.now());
+                    return record;
+                }
+                return null;
+            }
+            
+            public void committed(TaskImportProgress progress) {
+                listEpoch.incrementAndGet();
+                onCommit.accept(progress);
+            }
+        };
+        
+        try {
+            taskDAO.importTasks(source, batchSize, commitInterval, progress);
+        } catch (SQLException | IOException e) {
+            System.err.println("[TASK SERVICE] ✗ Importación interrumpida: " + e.getMessage());
+            progress.abort(e.getMessage());
+        }
+        
+        System.out.println("[TASK SERVICE] Importación terminada - Usuario: " + userId + " - importadas: "
+            + progress.getCommitted() + ", fallidas: " + progress.getFailed() + ", " + progress.getRowsPerSecond()
+            + " tareas/s en " + progress.getElapsedMillis() + " ms");
+        return progress;
+    }
+    
+    /**
+     * lee líneas (terminadas en \n o \r\n) con un buffer propio; una línea más larga que
+     * maxLength se consume hasta su final pero se devuelve vacía con wasTruncated() == true
+     */
+    private static class LineReader {
+        private final Reader reader;
+        private final int maxLength;
+        private final char[] buffer = new char[16 * 1024];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean truncated;
+        
+        LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+        
+        /**
+         * siguiente línea sin el salto, o null al final del cuerpo
+         */
+        String next() throws IOException {
+            line.setLength(0);
+            truncated = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return read ? finish() : null;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                append(start, position);
+                if (position < limit) {
+                    position++;
+                    return finish();
+                }
+            }
+        }
+        
+        boolean wasTruncated() {
+            return truncated;
+        }
+        
+        private void append(int from, int to) {
+            if (truncated) {
+                return;
+            }
+            if (line.length() + (to - from) > maxLength) {
+                truncated = true;
+                line.setLength(0);
+                return;
+            }
+            line.append(buffer, from, to - from);
+        }
+        
+        private String finish() {
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            return line.toString();
+        }
+    }
+    
     /**
      * elimina una tarea
      */
     public boolean deleteTask(Long taskId, Long userId) {
         try {
-            return taskDAO.deleteByIdAndUserId(taskId, userId);
+            Set<Long> audience = new HashSet<>();
+            findTask(taskId).ifPresent(before -> audienceOf(before, audience));
+            boolean deleted;
+            try {
+                deleted = taskDAO.deleteByIdAndUserId(taskId, userId);
+            } finally {
+                taskCache.invalidate(taskId);
+            }
+            if (deleted) {
+                audience.add(userId);
+                bumpListVersions(audience);
+            }
+            return deleted;
         } catch (SQLException e) {
             System.err.println("Error al eliminar tarea: " + e.getMessage());
             return false;
         }
     }
     
+    /**
+     * busca la tarea por id pasando por el caché; devuelve una copia que quien llama puede modificar
+     */
+    private Optional<Task> findTask(Long taskId) throws SQLException {
+        Task cached = taskCache.get(taskId);
+        if (cached != null) {
+            return Optional.of(new Task(cached));
+        }
+        long loadStamp = taskCache.startLoad();
+        Optional<Task> loaded = taskDAO.findById(taskId);
+        if (loaded.isPresent()) {
+            taskCache.put(taskId, new Task(loaded.get()), loadStamp);
+        }
+        return loaded;
+    }
+    
+    /**
+     * busca varias tareas por id pasando por el caché, con una sola consulta para las que no
+     * están; devuelve copias en el orden de ids y omite las que ya no existen
+     */
+    private Map<Long, Task> findTasks(List<Long> ids) throws SQLException {
+        Map<Long, Task> cached = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Task task = taskCache.get(id);
+            if (task != null) {
+                cached.put(id, task);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long loadStamp = taskCache.startLoad();
+            for (Task task : taskDAO.findByIds(missing).values()) {
+                cached.put(task.getId(), task);
+                taskCache.put(task.getId(), new Task(task), loadStamp);
+            }
+        }
+        
+        Map<Long, Task> tasks = new LinkedHashMap<>();
+        for (Long id : ids) {
+            Task task = cached.get(id);
+            if (task != null) {
+                tasks.put(id, new Task(task));
+            }
+        }
+        return tasks;
+    }
+    
+    /**
+     * agrega a audience los usuarios que ven la tarea en su lista: el creador y los asignados
+     */
+    private static Set<Long> audienceOf(Task task, Set<Long> audience) {
+        if (task.getCreatedBy() != null) {
+            audience.add(task.getCreatedBy());
+        }
+        if (task.getAssignedTo() != null) {
+            audience.add(task.getAssignedTo());
+        }
+        audience.addAll(task.getAssignedUsers());
+        return audience;
+    }
+    
+    private long listVersion(Long userId) {
+        return listVersions.computeIfAbsent(userId, id -> new AtomicLong()).get();
+    }
+    
+    /**
+     * invalida las listas cacheadas de los usuarios; se llama después de confirmar el cambio,
+     * así una lista leída antes queda con la versión anterior y no vuelve a usarse
+     */
+    private void bumpListVersions(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            listVersions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+    
+    /**
+     * contadores de los cachés del servicio, por nombre
+     */
+    public Map<String, Map<String, Object>> getCacheStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("tasks", taskCache.stats());
+        stats.put("visibleTasks", visibleTasksCache.stats());
+        return stats;
+    }
+    
     /**
      * obtiene todas las tareas
      */
@@ -0,0 +1,91 @@
+package com.kodeotask.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * filtro de Bloom de cadenas, thread-safe y solo de inserción.
+ *
+ * mightContain nunca da falsos negativos: si devuelve false la cadena no se agregó; si devuelve
+ * true puede ser un falso positivo (con la probabilidad pedida mientras no se supere el número
+ * de entradas esperado). las posiciones salen de dos hashes de 64 bits (doble hashing)
+ */
+public final class BloomFilter {
+    
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashes;
+    private final AtomicLong added = new AtomicLong();
+    
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        long m = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / expectedEntries * Math.log(2)));
+    }
+    
+    public void add(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+        added.incrementAndGet();
+    }
+    
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * bits, funciones de hash, inserciones y proporción de bits a 1
+     */
+    public Map<String, Object> stats() {
+        long set = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            set += Long.bitCount(bits.get(i));
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bits", bitCount);
+        stats.put("hashes", hashes);
+        stats.put("added", added.get());
+        stats.put("fillRatio", Math.round(set * 1000.0 / bitCount) / 1000.0);
+        return stats;
+    }
+    
+    // FNV-1a de 64 bits sobre los caracteres, con mezcla final
+    private static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+    
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
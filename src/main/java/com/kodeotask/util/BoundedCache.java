@@ -0,0 +1,388 @@
+package com.kodeotask.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * caché en memoria acotado por número de entradas y con TTL.
+ *
+ * la admisión y el desalojo tienen en cuenta la frecuencia (TinyLFU): con el caché lleno,
+ * una clave nueva solo entra si se ha pedido más veces que la víctima (la entrada usada
+ * hace más tiempo), así un recorrido de claves que se piden una sola vez no expulsa a las
+ * calientes. las frecuencias se aproximan con un count-min sketch de contadores de 4 bits
+ * que se reducen a la mitad periódicamente para ir olvidando accesos antiguos.
+ *
+ * las lecturas no toman ningún lock: consultan un ConcurrentHashMap y anotan el acceso en un
+ * buffer circular que se vuelca al sketch y al orden LRU con tryLock (si otro hilo lo está
+ * volcando, el acceso se pierde; solo afecta a la aproximación). las escrituras (put,
+ * invalidaciones) sí se serializan con ese lock.
+ *
+ * para no guardar un valor leído antes de una invalidación concurrente, quien carga de la
+ * base de datos pide un sello con startLoad() antes de leer y lo pasa a put(): si entre
+ * medias se invalidó esa clave el valor no se guarda. el sello de invalidación se guarda por
+ * grupos de claves (por hash), así escribir una tarea no descarta las cargas de las demás
+ */
+public class BoundedCache<K, V> {
+    
+    private static final int READ_BUFFER_SIZE = 256;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = 64;
+    
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final FrequencySketch sketch;
+    
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    
+    // accesos pendientes de volcar: un Node (acierto o entrada expirada) o una clave (fallo)
+    private final AtomicReferenceArray<Object> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readIndex = new AtomicLong();
+    
+    // protege el orden LRU, el sketch y toda modificación de data
+    private final ReentrantLock lock = new ReentrantLock();
+    // lista en orden de acceso: head es la víctima LRU
+    private Node<K, V> head;
+    private Node<K, V> tail;
+    
+    // sellos de invalidación: último tick en que se invalidó alguna clave de cada grupo
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLongArray invalidatedAt;
+    private final int stampMask;
+    private volatile long clearedAt;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long evictions;
+    private long expirations;
+    private long rejections;
+    private long invalidations;
+    
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final long expiresAt;
+        Node<K, V> previous;
+        Node<K, V> next;
+        boolean linked;
+        
+        Node(K key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    public BoundedCache(String name, int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("maxEntries y ttlMillis deben ser positivos");
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.sketch = new FrequencySketch(maxEntries);
+        this.data = new ConcurrentHashMap<>(Math.min(maxEntries, 1024));
+        int stampGroups = Integer.highestOneBit(Math.max(maxEntries, 64) - 1) << 1;
+        this.invalidatedAt = new AtomicLongArray(stampGroups);
+        this.stampMask = stampGroups - 1;
+    }
+    
+    /**
+     * devuelve el valor en caché, o null si no está o expiró; cuenta el acceso para la admisión
+     */
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            recordRead(key);
+            return null;
+        }
+        recordRead(node);
+        if (node.expiresAt - System.nanoTime() <= 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return node.value;
+    }
+    
+    /**
+     * sello a pedir antes de leer de la base de datos un valor que se guardará con put
+     */
+    public long startLoad() {
+        return clock.get();
+    }
+    
+    /**
+     * guarda el valor cargado, salvo que la clave se invalidara desde startLoad() o que sea
+     * menos frecuente que la víctima que tendría que desalojar
+     */
+    public void put(K key, V value, long loadStamp) {
+        lock.lock();
+        try {
+            drainReads();
+            // invalidate sube el sello antes de tomar el lock: si llegó después de esta
+            // comprobación, quitará la entrada en cuanto put suelte el lock
+            if (invalidatedAt.get(stampIndex(key)) > loadStamp || clearedAt > loadStamp) {
+                return;
+            }
+            long now = System.nanoTime();
+            Node<K, V> previous = data.get(key);
+            if (previous != null) {
+                unlink(previous);
+            } else if (data.size() >= maxEntries && head != null) {
+                Node<K, V> victim = head;
+                if (victim.expiresAt - now <= 0) {
+                    expirations++;
+                } else if (sketch.frequency(key) > sketch.frequency(victim.key)) {
+                    evictions++;
+                } else {
+                    rejections++;
+                    return;
+                }
+                unlink(victim);
+                data.remove(victim.key, victim);
+            }
+            Node<K, V> node = new Node<>(key, value, now + ttlNanos);
+            data.put(key, node);
+            linkLast(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void invalidate(K key) {
+        invalidatedAt.accumulateAndGet(stampIndex(key), clock.incrementAndGet(), Math::max);
+        lock.lock();
+        try {
+            remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void invalidateAll(Iterable<K> keys) {
+        long tick = clock.incrementAndGet();
+        for (K key : keys) {
+            invalidatedAt.accumulateAndGet(stampIndex(key), tick, Math::max);
+        }
+        lock.lock();
+        try {
+            for (K key : keys) {
+                remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void clear() {
+        clearedAt = clock.incrementAndGet();
+        lock.lock();
+        try {
+            invalidations += data.size();
+            data.clear();
+            // los nodos pueden seguir en el buffer de lecturas: quedan marcados como fuera de la lista
+            for (Node<K, V> node = head; node != null; ) {
+                Node<K, V> next = node.next;
+                node.previous = null;
+                node.next = null;
+                node.linked = false;
+                node = next;
+            }
+            head = null;
+            tail = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * contadores del caché (tamaño, aciertos, fallos, desalojos, expiraciones, rechazos de admisión e invalidaciones)
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("name", name);
+            stats.put("size", data.size());
+            stats.put("maxEntries", maxEntries);
+            stats.put("ttlMs", ttlNanos / 1_000_000);
+            stats.put("hits", hitCount);
+            stats.put("misses", missCount);
+            stats.put("hitRate", hitCount + missCount > 0 ? Math.round(hitCount * 1000.0 / (hitCount + missCount)) / 1000.0 : 0.0);
+            stats.put("evictions", evictions);
+            stats.put("expirations", expirations);
+            stats.put("rejections", rejections);
+            stats.put("invalidations", invalidations);
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+    
+    private void recordRead(Object item) {
+        long index = readIndex.getAndIncrement();
+        readBuffer.lazySet((int) (index & READ_BUFFER_MASK), item);
+        if ((index & (DRAIN_THRESHOLD - 1)) == DRAIN_THRESHOLD - 1 && lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    // con el lock tomado: aplica los accesos anotados al sketch y al orden LRU, y quita las
+    // entradas expiradas que se leyeron
+    @SuppressWarnings("unchecked")
+    private void drainReads() {
+        long now = System.nanoTime();
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Object item = readBuffer.getAndSet(i, null);
+            if (item == null) {
+                continue;
+            }
+            if (!(item instanceof Node)) {
+                sketch.increment(item);
+                continue;
+            }
+            Node<K, V> node = (Node<K, V>) item;
+            sketch.increment(node.key);
+            if (!node.linked) {
+                continue;
+            }
+            if (node.expiresAt - now <= 0) {
+                unlink(node);
+                data.remove(node.key, node);
+                expirations++;
+            } else {
+                unlink(node);
+                linkLast(node);
+            }
+        }
+    }
+    
+    private void remove(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            unlink(node);
+            invalidations++;
+        }
+    }
+    
+    private int stampIndex(K key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & stampMask;
+    }
+    
+    private void linkLast(Node<K, V> node) {
+        node.previous = tail;
+        node.next = null;
+        if (tail != null) {
+            tail.next = node;
+        } else {
+            head = node;
+        }
+        tail = node;
+        node.linked = true;
+    }
+    
+    private void unlink(Node<K, V> node) {
+        if (!node.linked) {
+            return;
+        }
+        if (node.previous != null) {
+            node.previous.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.previous = node.previous;
+        } else {
+            tail = node.previous;
+        }
+        node.previous = null;
+        node.next = null;
+        node.linked = false;
+    }
+    
+    /**
+     * count-min sketch con 4 filas de contadores de 4 bits (16 por long); tras 10 accesos
+     * por entrada del caché todos los contadores se dividen entre dos
+     */
+    private static class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        private static final long RESET_MASK = 0x7777777777777777L;
+        
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+        
+        FrequencySketch(int maxEntries) {
+            int size = Integer.highestOneBit(Math.max(maxEntries, 16) - 1) << 1;
+            table = new long[size];
+            tableMask = size - 1;
+            sampleSize = 10 * maxEntries;
+        }
+        
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int min = 15;
+            for (int i = 0; i < 4; i++) {
+                long index = indexOf(hash, i);
+                int count = (int) ((table[(int) (index >>> 4)] >>> ((index & 15) << 2)) & 15);
+                min = Math.min(min, count);
+            }
+            return min;
+        }
+        
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                long index = indexOf(hash, i);
+                int slot = (int) (index >>> 4);
+                int shift = (int) ((index & 15) << 2);
+                if (((table[slot] >>> shift) & 15) < 15) {
+                    table[slot] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+        
+        // posición (slot << 4 | contador dentro del long) de la fila i para el hash
+        private long indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            int slot = (int) (h >>> 8) & tableMask;
+            return ((long) slot << 4) | (h & 15);
+        }
+        
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+        
+        private static int spread(int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+    }
+}
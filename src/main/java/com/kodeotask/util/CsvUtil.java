@@ -0,0 +1,72 @@
+package com.kodeotask.util;
+
+import com.kodeotask.model.Task;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * utilidad para generar CSV (RFC 4180) de tareas
+ */
+public class CsvUtil {
+    
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    
+    /**
+     * línea de cabecera con los nombres de las columnas, terminada en CRLF
+     */
+    public static final String TASK_HEADER =
+        "id,title,description,status,category,createdBy,createdByUsername,assignedTo,"
+        + "assignedUsers,dueDate,createdAt,updatedAt,completedAt,version\r\n";
+    
+    /**
+     * escribe una tarea como línea CSV terminada en CRLF; assignedUsers va separado por ';'
+     */
+    public static void appendTask(StringBuilder sb, Task task) {
+        sb.append(task.getId()).append(',');
+        appendField(sb, task.getTitle()).append(',');
+        appendField(sb, task.getDescription()).append(',');
+        sb.append(task.getStatus() != null ? task.getStatus().name() : "").append(',');
+        appendField(sb, task.getCategory()).append(',');
+        sb.append(task.getCreatedBy() != null ? task.getCreatedBy() : "").append(',');
+        appendField(sb, task.getCreatedByUsername()).append(',');
+        sb.append(task.getAssignedTo() != null ? task.getAssignedTo() : "").append(',');
+        
+        List<Long> assignedUsers = task.getAssignedUsers();
+        for (int i = 0; i < assignedUsers.size(); i++) {
+            if (i > 0) sb.append(';');
+            sb.append(assignedUsers.get(i));
+        }
+        sb.append(',');
+        
+        appendDate(sb, task.getDueDate()).append(',');
+        appendDate(sb, task.getCreatedAt()).append(',');
+        appendDate(sb, task.getUpdatedAt()).append(',');
+        appendDate(sb, task.getCompletedAt()).append(',');
+        sb.append(task.getVersion() != null ? task.getVersion() : "");
+        sb.append("\r\n");
+    }
+    
+    /**
+     * agrega un campo de texto, entre comillas si contiene separadores, comillas o saltos de línea
+     */
+    private static StringBuilder appendField(StringBuilder sb, String value) {
+        if (value == null || value.isEmpty()) {
+            return sb;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return sb.append(value);
+        }
+        return sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+    
+    private static StringBuilder appendDate(StringBuilder sb, LocalDateTime value) {
+        return value != null ? sb.append(value.format(DATE_TIME_FORMATTER)) : sb;
+    }
+}
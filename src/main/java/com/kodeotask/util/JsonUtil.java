@@ -1,9 +1,13 @@
 package com.kodeotask.util;
 
 import com.kodeotask.model.Task;
+import com.kodeotask.model.TaskImportRecord;
+import com.kodeotask.model.TaskPage;
+import com.kodeotask.model.TaskPatch;
 import com.kodeotask.model.TaskStatus;
 import com.kodeotask.model.User;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -12,6 +16,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -58,6 +64,61 @@ public class JsonUtil {
         return result;
     }
     
+    /**
+     * separa un array JSON en el texto de cada uno de sus elementos de primer nivel,
+     * respetando strings y objetos/arrays anidados. lanza IllegalArgumentException si
+     * el texto no es un array
+     */
+    public static List<String> splitArray(String json) {
+        String text = json != null ? json.trim() : "";
+        if (text.length() < 2 || text.charAt(0) != '[' || text.charAt(text.length() - 1) != ']') {
+            throw new IllegalArgumentException("Se esperaba un array JSON");
+        }
+        
+        List<String> elements = new ArrayList<>();
+        int depth = 0;
+        int start = 1;
+        boolean inString = false;
+        for (int i = 1; i < text.length() - 1; i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth < 0) {
+                    throw new IllegalArgumentException("Array JSON mal formado");
+                }
+            } else if (c == ',' && depth == 0) {
+                addElement(elements, text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (depth != 0 || inString) {
+            throw new IllegalArgumentException("Array JSON mal formado");
+        }
+        String last = text.substring(start, text.length() - 1);
+        if (!last.isBlank() || !elements.isEmpty()) {
+            addElement(elements, last);
+        }
+        return elements;
+    }
+    
+    private static void addElement(List<String> elements, String element) {
+        String trimmed = element.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Array JSON mal formado");
+        }
+        elements.add(trimmed);
+    }
+    
     /**
      * convierte un Map a JSON
      */
@@ -87,6 +148,146 @@ public class JsonUtil {
         return sb.toString();
     }
     
+    /**
+     * JSON ya serializado (UTF-8) de las tareas, por id. una entrada solo se reutiliza si la
+     * tarea sigue en la misma versión y updatedAt (toda escritura aumenta version) y con los
+     * mismos nombres de usuario, que pueden cambiar sin tocar la tarea
+     */
+    private static final BoundedCache<Long, SerializedTask> taskJsonCache =
+        new BoundedCache<>("taskJson", 10_000, 10 * 60 * 1000);
+    
+    /**
+     * entradas encontradas en taskJsonCache pero de otra versión de la tarea
+     */
+    private static final AtomicLong staleTaskJson = new AtomicLong();
+    
+    private static final class SerializedTask {
+        final Integer version;
+        final LocalDateTime updatedAt;
+        final String createdByUsername;
+        final List<String> assignedUsersNames;
+        final byte[] json;
+        // el JSON escapado como string, para las notificaciones UDP; se calcula la primera vez
+        volatile byte[] escaped;
+        
+        SerializedTask(Task task) {
+            this.version = task.getVersion();
+            this.updatedAt = task.getUpdatedAt();
+            this.createdByUsername = task.getCreatedByUsername();
+            this.assignedUsersNames = List.copyOf(task.getAssignedUsersNames());
+            this.json = task.toJson().getBytes(StandardCharsets.UTF_8);
+        }
+        
+        boolean matches(Task task) {
+            return Objects.equals(version, task.getVersion())
+                && Objects.equals(updatedAt, task.getUpdatedAt())
+                && Objects.equals(createdByUsername, task.getCreatedByUsername())
+                && assignedUsersNames.equals(task.getAssignedUsersNames());
+        }
+    }
+    
+    /**
+     * serialización de la tarea, reutilizando la cacheada si la tarea no cambió. las tareas
+     * sin id o sin versión (aún no leídas de la base de datos) no se cachean
+     */
+    private static SerializedTask serialized(Task task) {
+        if (task.getId() == null || task.getVersion() == null) {
+            return new SerializedTask(task);
+        }
+        SerializedTask cached = taskJsonCache.get(task.getId());
+        if (cached != null) {
+            if (cached.matches(task)) {
+                return cached;
+            }
+            staleTaskJson.incrementAndGet();
+        }
+        SerializedTask fresh = new SerializedTask(task);
+        taskJsonCache.put(task.getId(), fresh, taskJsonCache.startLoad());
+        return fresh;
+    }
+    
+    /**
+     * JSON de la tarea en UTF-8; el array puede ser compartido y no debe modificarse
+     */
+    public static byte[] taskToJsonBytes(Task task) {
+        return serialized(task).json;
+    }
+    
+    /**
+     * JSON de la tarea escapado para ir como valor string dentro de otro JSON (sin las
+     * comillas), en UTF-8; el array puede ser compartido y no debe modificarse
+     */
+    public static byte[] taskToEscapedJsonBytes(Task task) {
+        SerializedTask serialized = serialized(task);
+        byte[] escaped = serialized.escaped;
+        if (escaped == null) {
+            escaped = escapeJson(new String(serialized.json, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            serialized.escaped = escaped;
+        }
+        return escaped;
+    }
+    
+    /**
+     * array JSON de las tareas en UTF-8, armado con el JSON cacheado de cada una
+     */
+    public static byte[] tasksToJsonBytes(List<Task> tasks) {
+        return tasksToJsonBytes(tasks, "", "");
+    }
+    
+    /**
+     * página de tareas en UTF-8, con el mismo formato que TaskPage.toJson()
+     */
+    public static byte[] pageToJsonBytes(TaskPage page) {
+        // el cursor es base64url: no necesita escape
+        String cursor = page.getNextCursor() != null ? "\"" + page.getNextCursor() + "\"" : "null";
+        return tasksToJsonBytes(page.getTasks(), "{\"tasks\":", ",\"nextCursor\":" + cursor + ",\"limit\":" + page.getLimit() + "}");
+    }
+    
+    /**
+     * prefix + array de tareas + suffix en un único array del tamaño exacto
+     */
+    private static byte[] tasksToJsonBytes(List<Task> tasks, String prefix, String suffix) {
+        byte[][] parts = new byte[tasks.size()][];
+        byte[] head = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] tail = suffix.getBytes(StandardCharsets.UTF_8);
+        int length = head.length + 2 + Math.max(0, tasks.size() - 1) + tail.length;
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = serialized(tasks.get(i)).json;
+            length += parts[i].length;
+        }
+        
+        byte[] out = new byte[length];
+        System.arraycopy(head, 0, out, 0, head.length);
+        int position = head.length;
+        out[position++] = '[';
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                out[position++] = ',';
+            }
+            System.arraycopy(parts[i], 0, out, position, parts[i].length);
+            position += parts[i].length;
+        }
+        out[position++] = ']';
+        System.arraycopy(tail, 0, out, position, tail.length);
+        return out;
+    }
+    
+    /**
+     * contadores del caché de JSON de tareas
+     */
+    public static Map<String, Object> taskJsonCacheStats() {
+        Map<String, Object> stats = taskJsonCache.stats();
+        stats.put("stale", staleTaskJson.get());
+        return stats;
+    }
+    
+    /**
+     * convierte una tarea a JSON
+     */
+    public static String taskToJson(Task task) {
+        return task.toJson();
+    }
+    
     /**
      * convierte una lista de tareas a JSON
      */
@@ -127,26 +328,9 @@ public class JsonUtil {
     public static Task parseTask(String json) {
         Task task = new Task();
         
-        if (json != null && json.contains("\"assignedUsers\"")) {
-            Pattern arrayPattern = Pattern.compile("\"assignedUsers\"\\s*:\\s*\\[([^\\]]*)\\]");
-            Matcher arrayMatcher = arrayPattern.matcher(json);
-            if (arrayMatcher.find()) {
-                String arrayContent = arrayMatcher.group(1);
-                List<Long> assignedUsers = new ArrayList<>();
-                if (arrayContent != null && !arrayContent.trim().isEmpty()) {
-                    String[] userIds = arrayContent.split(",");
-                    for (String userIdStr : userIds) {
-                        try {
-                            assignedUsers.add(Long.parseLong(userIdStr.trim()));
-                        } catch (NumberFormatException ignored) {}
-                    }
-                }
-                task.setAssignedUsers(assignedUsers);
-            } else {
-                if (json.contains("\"assignedUsers\":[]")) {
-                    task.setAssignedUsers(new ArrayList<>());
-                }
-            }
+        List<Long> assignedUsers = parseAssignedUsers(json);
+        if (assignedUsers != null) {
+            task.setAssignedUsers(assignedUsers);
         }
         
         Map<String, String> map = parseJson(json);
@@ -186,14 +370,9 @@ public class JsonUtil {
             String dueDateStr = map.get("dueDate").trim();
             if (!dueDateStr.isEmpty()) {
                 try {
-                    task.setDueDate(LocalDateTime.parse(dueDateStr, DATE_TIME_FORMATTER));
-                } catch (DateTimeParseException e1) {
-                    try {
-                        LocalDate date = LocalDate.parse(dueDateStr, DATE_FORMATTER);
-                        task.setDueDate(date.atStartOfDay());
-                    } catch (DateTimeParseException e2) {
-                        System.err.println("Error parseando fecha dueDate: " + dueDateStr);
-                    }
+                    task.setDueDate(parseDateTime(dueDateStr));
+                } catch (DateTimeParseException e) {
+                    System.err.println("Error parseando fecha dueDate: " + dueDateStr);
                 }
             }
         }
@@ -201,6 +380,176 @@ public class JsonUtil {
         return task;
     }
     
+    /**
+     * parsea el cuerpo de un PATCH: solo los campos presentes entran en el TaskPatch.
+     * lanza IllegalArgumentException si algún valor no es válido
+     */
+    public static TaskPatch parseTaskPatch(String json) {
+        TaskPatch patch = new TaskPatch();
+        Map<String, String> map = parseJson(json);
+        
+        if (map.containsKey("title")) {
+            String title = map.get("title");
+            if (title == null || title.trim().isEmpty()) {
+                throw new IllegalArgumentException("title no puede estar vacío");
+            }
+            patch.setTitle(title);
+        }
+        if (map.containsKey("description")) {
+            patch.setDescription(map.get("description"));
+        }
+        if (map.containsKey("category")) {
+            patch.setCategory(map.get("category"));
+        }
+        if (map.containsKey("status")) {
+            try {
+                patch.setStatus(TaskStatus.valueOf(String.valueOf(map.get("status"))));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("status debe ser PENDING, IN_PROGRESS o COMPLETED");
+            }
+        }
+        if (map.containsKey("assignedTo")) {
+            String assignedTo = map.get("assignedTo");
+            try {
+                patch.setAssignedTo(assignedTo != null ? Long.parseLong(assignedTo.trim()) : null);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("assignedTo debe ser un id de usuario o null");
+            }
+        }
+        if (map.containsKey("dueDate")) {
+            String dueDate = map.get("dueDate");
+            try {
+                patch.setDueDate(dueDate != null && !dueDate.trim().isEmpty() ? parseDateTime(dueDate.trim()) : null);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("dueDate debe ser una fecha ISO o null");
+            }
+        }
+        if (map.containsKey("version") && map.get("version") != null) {
+            try {
+                patch.setExpectedVersion(Integer.parseInt(map.get("version").trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("version debe ser un número");
+            }
+        }
+        
+        patch.setAssignedUsers(parseAssignedUsers(json));
+        return patch;
+    }
+    
+    /**
+     * parsea una línea de una importación NDJSON: los campos de POST /api/tasks más
+     * assignedToUsername y assignedUsernames, que referencian usuarios por username.
+     * lanza IllegalArgumentException si la línea no es una tarea válida
+     */
+    public static TaskImportRecord parseTaskImport(String json) {
+        String text = json.trim();
+        if (!text.startsWith("{") || !text.endsWith("}")) {
+            throw new IllegalArgumentException("Se esperaba un objeto JSON");
+        }
+        Map<String, String> map = parseJson(text);
+        Task task = new Task();
+        
+        String title = map.get("title");
+        if (title == null || title.trim().isEmpty()) {
+            throw new IllegalArgumentException("title es obligatorio");
+        }
+        if (title.length() > 200) {
+            throw new IllegalArgumentException("title no puede superar 200 caracteres");
+        }
+        task.setTitle(title);
+        task.setDescription(map.get("description"));
+        
+        String category = map.get("category");
+        if (category != null && category.length() > 50) {
+            throw new IllegalArgumentException("category no puede superar 50 caracteres");
+        }
+        task.setCategory(category);
+        
+        String status = map.get("status");
+        if (status != null && !status.isEmpty()) {
+            try {
+                task.setStatus(TaskStatus.valueOf(status));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("status debe ser PENDING, IN_PROGRESS o COMPLETED");
+            }
+        }
+        
+        String dueDate = map.get("dueDate");
+        if (dueDate != null && !dueDate.trim().isEmpty()) {
+            try {
+                task.setDueDate(parseDateTime(dueDate.trim()));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("dueDate debe ser una fecha ISO");
+            }
+        }
+        
+        String assignedTo = map.get("assignedTo");
+        if (assignedTo != null) {
+            try {
+                task.setAssignedTo(Long.parseLong(assignedTo.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("assignedTo debe ser un id de usuario");
+            }
+        }
+        List<Long> assignedUsers = parseAssignedUsers(text);
+        if (assignedUsers != null) {
+            task.setAssignedUsers(assignedUsers);
+        }
+        
+        TaskImportRecord record = new TaskImportRecord(task);
+        record.setAssignedToUsername(map.get("assignedToUsername"));
+        String assignedUsernames = map.get("assignedUsernames");
+        if (assignedUsernames != null) {
+            List<String> usernames = new ArrayList<>();
+            for (String element : splitArray(assignedUsernames)) {
+                if (element.length() < 2 || !element.startsWith("\"") || !element.endsWith("\"")) {
+                    throw new IllegalArgumentException("assignedUsernames debe ser un array de usernames");
+                }
+                usernames.add(element.substring(1, element.length() - 1));
+            }
+            record.setAssignedUsernames(usernames);
+        }
+        return record;
+    }
+    
+    /**
+     * extrae el array assignedUsers, o null si el JSON no lo trae
+     */
+    private static List<Long> parseAssignedUsers(String json) {
+        if (json == null || !json.contains("\"assignedUsers\"")) {
+            return null;
+        }
+        
+        Pattern arrayPattern = Pattern.compile("\"assignedUsers\"\\s*:\\s*\\[([^\\]]*)\\]");
+        Matcher arrayMatcher = arrayPattern.matcher(json);
+        if (!arrayMatcher.find()) {
+            return json.contains("\"assignedUsers\":[]") ? new ArrayList<>() : null;
+        }
+        
+        String arrayContent = arrayMatcher.group(1);
+        List<Long> assignedUsers = new ArrayList<>();
+        if (arrayContent != null && !arrayContent.trim().isEmpty()) {
+            String[] userIds = arrayContent.split(",");
+            for (String userIdStr : userIds) {
+                try {
+                    assignedUsers.add(Long.parseLong(userIdStr.trim()));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        return assignedUsers;
+    }
+    
+    /**
+     * parsea una fecha ISO con hora (2024-05-01T10:00:00) o sin ella (2024-05-01, a las 00:00)
+     */
+    public static LocalDateTime parseDateTime(String value) throws DateTimeParseException {
+        try {
+            return LocalDateTime.parse(value, DATE_TIME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return LocalDate.parse(value, DATE_FORMATTER).atStartOfDay();
+        }
+    }
+    
     /**
      * escapa caracteres especiales para JSON
      */
@@ -1,40 +1,44 @@
 package com.kodeotask.util;
 
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 /**
- * utilidad para hashing de contraseñas usando SHA-256 con salt
+ * utilidad para hashing de contraseñas con PBKDF2-HMAC-SHA256 y salt.
+ *
+ * los hashes nuevos se guardan como "pbkdf2$iteraciones$salt$hash" (salt y hash en base64), así
+ * cada uno conserva el coste con el que se creó; los hashes anteriores (SHA-256 con salt, en
+ * base64 sin prefijo) se siguen verificando y needsRehash indica que conviene regenerarlos
  */
 public class PasswordUtil {
     
     private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PBKDF2_PREFIX = "pbkdf2$";
+    
+    /**
+     * coste del KDF para los hashes nuevos (propiedad de sistema kodeotask.password.iterations)
+     */
+    private static final int ITERATIONS = Integer.getInteger("kodeotask.password.iterations", 310_000);
+    
+    private static final SecureRandom random = new SecureRandom();
     
     /**
      * genera un hash de la contraseña con salt
      */
     public static String hashPassword(String password) {
-        try {
-            SecureRandom random = new SecureRandom();
-            byte[] salt = new byte[SALT_LENGTH];
-            random.nextBytes(salt);
-            
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(salt);
-            byte[] hashedPassword = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            
-            byte[] combined = new byte[salt.length + hashedPassword.length];
-            System.arraycopy(salt, 0, combined, 0, salt.length);
-            System.arraycopy(hashedPassword, 0, combined, salt.length, hashedPassword.length);
-            
-            return Base64.getEncoder().encodeToString(combined);
-            
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error al generar hash: " + e.getMessage());
-        }
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PBKDF2_PREFIX + ITERATIONS + "$" + encoder.encodeToString(salt) + "$"
+            + encoder.encodeToString(pbkdf2(password, salt, ITERATIONS));
     }
     
     /**
@@ -42,24 +46,73 @@ public class PasswordUtil {
      */
     public static boolean verifyPassword(String password, String storedHash) {
         try {
-            byte[] combined = Base64.getDecoder().decode(storedHash);
-            
-            byte[] salt = new byte[SALT_LENGTH];
-            System.arraycopy(combined, 0, salt, 0, SALT_LENGTH);
-            
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(salt);
-            byte[] hashedPassword = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            
-            byte[] storedHashBytes = new byte[combined.length - SALT_LENGTH];
-            System.arraycopy(combined, SALT_LENGTH, storedHashBytes, 0, storedHashBytes.length);
-            
-            return MessageDigest.isEqual(hashedPassword, storedHashBytes);
+            if (storedHash.startsWith(PBKDF2_PREFIX)) {
+                String[] parts = storedHash.split("\\$");
+                if (parts.length != 4) {
+                    return false;
+                }
+                int iterations = Integer.parseInt(parts[1]);
+                byte[] salt = Base64.getDecoder().decode(parts[2]);
+                byte[] expected = Base64.getDecoder().decode(parts[3]);
+                return MessageDigest.isEqual(pbkdf2(password, salt, iterations), expected);
+            }
+            return verifyLegacy(password, storedHash);
             
         } catch (Exception e) {
             System.err.println("Error al verificar contraseña: " + e.getMessage());
             return false;
         }
     }
+    
+    /**
+     * true si el hash no es PBKDF2 o se creó con menos iteraciones que las configuradas
+     */
+    public static boolean needsRehash(String storedHash) {
+        if (storedHash == null || !storedHash.startsWith(PBKDF2_PREFIX)) {
+            return true;
+        }
+        int end = storedHash.indexOf('$', PBKDF2_PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(storedHash.substring(PBKDF2_PREFIX.length(), end)) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+    
+    /**
+     * iteraciones de PBKDF2 de los hashes nuevos
+     */
+    public static int getIterations() {
+        return ITERATIONS;
+    }
+    
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_LENGTH * 8);
+        try {
+            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error al generar hash: " + e.getMessage());
+        } finally {
+            spec.clearPassword();
+        }
+    }
+    
+    /**
+     * formato anterior: base64(salt + SHA-256(salt + contraseña))
+     */
+    private static boolean verifyLegacy(String password, String storedHash) throws GeneralSecurityException {
+        byte[] combined = Base64.getDecoder().decode(storedHash);
+        
+        byte[] salt = new byte[SALT_LENGTH];
+        System.arraycopy(combined, 0, salt, 0, SALT_LENGTH);
+        
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(salt);
+        byte[] hashedPassword = md.digest(password.getBytes(StandardCharsets.UTF_8));
+        
+        byte[] storedHashBytes = new byte[combined.length - SALT_LENGTH];
+        System.arraycopy(combined, SALT_LENGTH, storedHashBytes, 0, storedHashBytes.length);
+        
+        return MessageDigest.isEqual(hashedPassword, storedHashBytes);
+    }
 }
-
@@ -0,0 +1,218 @@
+package com.kodeotask.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * caché acotado de tokens ya verificados, con expiración por rueda de tiempo (hashed timing wheel).
+ *
+ * cada entrada va a la casilla del tick en que expira; la rueda avanza al usarse (sin hilo
+ * propio) y en cada tick solo recorre la casilla que vence, así expirar cuesta O(1) por
+ * entrada en lugar de recorrer todo el caché. si la rueda cubre toda la vida de un token,
+ * cada casilla solo contiene entradas de ese tick. con el caché lleno se desaloja la entrada
+ * más próxima a expirar: un token desalojado se vuelve a verificar por su firma.
+ *
+ * la consulta no toma locks (ConcurrentHashMap y comprobación de la expiración); la rueda solo
+ * se modifica con su propio lock, en put y expire y también desde get cuando pasó un tick, así
+ * las entradas vencidas se quitan aunque no se guarden tokens nuevos
+ */
+final class TokenCache {
+    
+    /**
+     * datos de un token verificado; también es el nodo de la lista de su casilla
+     */
+    static final class Entry {
+        private final String token;
+        private final Long userId;
+        private final String username;
+        private final long expiration;
+        private final long deadlineTick;
+        private int slot;
+        private Entry previous;
+        private Entry next;
+        
+        private Entry(String token, Long userId, String username, long expiration, long deadlineTick) {
+            this.token = token;
+            this.userId = userId;
+            this.username = username;
+            this.expiration = expiration;
+            this.deadlineTick = deadlineTick;
+        }
+        
+        Long getUserId() { return userId; }
+        String getUsername() { return username; }
+        long getExpiration() { return expiration; }
+    }
+    
+    private final int maxEntries;
+    private final long tickMillis;
+    private final Entry[] wheel;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    
+    // protege la rueda y toda modificación de entries y currentTick; currentTick es volatile
+    // para que get vea sin el lock si la rueda tiene que avanzar
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private volatile long currentTick;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long expirations;
+    private long evictions;
+    
+    TokenCache(int maxEntries, long tickMillis, int slots) {
+        this.maxEntries = maxEntries;
+        this.tickMillis = tickMillis;
+        this.wheel = new Entry[slots];
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+    }
+    
+    /**
+     * el token si está en caché y no expiró; null si no. las entradas vencidas se quitan al
+     * avanzar la rueda: si ya pasó el tick actual, la primera consulta que lo nota la avanza
+     * (sin esperar si otro hilo la está moviendo)
+     */
+    Entry get(String token, long now) {
+        if (now / tickMillis > currentTick) {
+            expire(now);
+        }
+        Entry entry = entries.get(token);
+        if (entry == null || entry.expiration <= now) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+    
+    void put(String token, Long userId, String username, long expiration, long now) {
+        if (expiration <= now) {
+            return;
+        }
+        wheelLock.lock();
+        try {
+            advance(now);
+            Entry previous = entries.get(token);
+            if (previous != null) {
+                remove(previous);
+            } else if (entries.size() >= maxEntries) {
+                evictNearestExpiration();
+            }
+            
+            long deadlineTick = (expiration + tickMillis - 1) / tickMillis;
+            Entry entry = new Entry(token, userId, username, expiration, deadlineTick);
+            entries.put(token, entry);
+            link(entry, Math.max(deadlineTick, currentTick + 1));
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+    
+    /**
+     * expira las entradas vencidas hasta ahora; si otro hilo está moviendo la rueda no espera
+     */
+    void expire(long now) {
+        if (wheelLock.tryLock()) {
+            try {
+                advance(now);
+            } finally {
+                wheelLock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * tamaño, aciertos, fallos, expiraciones y desalojos
+     */
+    Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        wheelLock.lock();
+        try {
+            stats.put("name", "tokens");
+            stats.put("size", entries.size());
+            stats.put("maxEntries", maxEntries);
+            stats.put("hits", hitCount);
+            stats.put("misses", missCount);
+            stats.put("hitRate", hitCount + missCount > 0 ? Math.round(hitCount * 1000.0 / (hitCount + missCount)) / 1000.0 : 0.0);
+            stats.put("expirations", expirations);
+            stats.put("evictions", evictions);
+        } finally {
+            wheelLock.unlock();
+        }
+        return stats;
+    }
+    
+    /**
+     * procesa las casillas de los ticks transcurridos; tras una pausa de una vuelta completa
+     * o más, cada casilla se recorre una sola vez
+     */
+    private void advance(long now) {
+        long tick = now / tickMillis;
+        if (tick <= currentTick) {
+            return;
+        }
+        if (tick - currentTick >= wheel.length) {
+            for (int slot = 0; slot < wheel.length; slot++) {
+                expireSlot(slot, tick);
+            }
+        } else {
+            for (long t = currentTick + 1; t <= tick; t++) {
+                expireSlot((int) (t % wheel.length), tick);
+            }
+        }
+        currentTick = tick;
+    }
+    
+    // una casilla puede tener entradas de vueltas posteriores (si la rueda es más corta que su vida): se conservan
+    private void expireSlot(int slot, long tick) {
+        Entry entry = wheel[slot];
+        while (entry != null) {
+            Entry next = entry.next;
+            if (entry.deadlineTick <= tick) {
+                remove(entry);
+                expirations++;
+            }
+            entry = next;
+        }
+    }
+    
+    // la primera casilla no vacía a partir del tick actual tiene las entradas más próximas a expirar
+    private void evictNearestExpiration() {
+        for (int i = 1; i <= wheel.length; i++) {
+            Entry entry = wheel[(int) ((currentTick + i) % wheel.length)];
+            if (entry != null) {
+                remove(entry);
+                evictions++;
+                return;
+            }
+        }
+    }
+    
+    private void link(Entry entry, long tick) {
+        int slot = (int) (tick % wheel.length);
+        entry.slot = slot;
+        entry.next = wheel[slot];
+        if (wheel[slot] != null) {
+            wheel[slot].previous = entry;
+        }
+        wheel[slot] = entry;
+    }
+    
+    private void remove(Entry entry) {
+        entries.remove(entry.token, entry);
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            wheel[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+}
@@ -1,10 +1,17 @@
 package com.kodeotask.util;
 
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * utilidad para generación y validación de tokens
@@ -13,34 +20,66 @@ public class TokenUtil {
     
     private static final String SECRET_KEY = "kodeotask-secret-key-2024-muy-segura";
     private static final long TOKEN_DURATION = 24 * 60 * 60 * 1000;
-    private static final Map<String, TokenData> tokenCache = new ConcurrentHashMap<>();
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
     
-    private static class TokenData {
-        Long userId;
-        String username;
-        long expiration;
-        
-        TokenData(Long userId, String username, long expiration) {
-            this.userId = userId;
-            this.username = username;
-            this.expiration = expiration;
-        }
-    }
+    /**
+     * bytes del HMAC que se conservan en la firma (32 caracteres en base64) y longitud máxima
+     * aceptada de un token
+     */
+    private static final int SIGNATURE_BYTES = 24;
+    private static final int MAX_TOKEN_LENGTH = 1024;
+    private static final int[] BASE64_VALUES = base64Values();
+    
+    /**
+     * instancias de HMAC y buffers compartidas por todos los hilos: Mac no es thread-safe y
+     * crearla en cada verificación cuesta más que la propia firma. no es un ThreadLocal porque
+     * con --virtual-threads cada conexión corre en un hilo nuevo y crearía la suya
+     */
+    private static final VerifierPool verifiers = new VerifierPool(Runtime.getRuntime().availableProcessors() * 2);
     
     /**
-     * genera un token para el usuario
+     * hasta este instante también se aceptan tokens firmados con el esquema anterior
+     * (SHA-256 de clave + payload, mismos 24 bytes en base64): los emitidos antes de desplegar
+     * siguen valiendo hasta su expiración, y pasada la vida de un token desde el arranque ya no
+     * puede quedar ninguno válido
+     */
+    private static final long LEGACY_SIGNATURE_UNTIL = System.currentTimeMillis() + TOKEN_DURATION;
+    
+    /**
+     * tokens verificados en memoria: como máximo MAX_CACHED_TOKENS, con una rueda de ticks de
+     * un minuto que cubre la vida completa de un token
+     */
+    private static final int MAX_CACHED_TOKENS = 100_000;
+    private static final long CACHE_TICK_MILLIS = 60 * 1000;
+    private static final TokenCache tokenCache =
+        new TokenCache(MAX_CACHED_TOKENS, CACHE_TICK_MILLIS, (int) (TOKEN_DURATION / CACHE_TICK_MILLIS) + 1);
+    
+    /**
+     * genera un token para el usuario: base64 de "userId:username:expiration:firma", donde la
+     * firma son los primeros SIGNATURE_BYTES del HMAC-SHA256 del resto, en base64
      */
     public static String generateToken(Long userId, String username) {
-        long expiration = System.currentTimeMillis() + TOKEN_DURATION;
+        long now = System.currentTimeMillis();
+        long expiration = now + TOKEN_DURATION;
         
-        String payload = userId + ":" + username + ":" + expiration;
-        String signature = createSignature(payload);
+        byte[] payload = (userId + ":" + username + ":" + expiration).getBytes(StandardCharsets.UTF_8);
+        Verifier verifier = verifiers.acquire();
+        byte[] mac;
+        try {
+            mac = verifier.sign(payload, 0, payload.length);
+        } finally {
+            verifiers.release(verifier);
+        }
+        String signature = Base64.getEncoder().encodeToString(Arrays.copyOf(mac, SIGNATURE_BYTES));
         
-        String token = Base64.getEncoder().encodeToString(
-            (payload + ":" + signature).getBytes(StandardCharsets.UTF_8)
-        );
+        byte[] signed = Arrays.copyOf(payload, payload.length + 1 + signature.length());
+        signed[payload.length] = ':';
+        for (int i = 0; i < signature.length(); i++) {
+            signed[payload.length + 1 + i] = (byte) signature.charAt(i);
+        }
+        String token = Base64.getEncoder().encodeToString(signed);
         
-        tokenCache.put(token, new TokenData(userId, username, expiration));
+        tokenCache.put(token, userId, username, expiration, now);
         
         return token;
     }
@@ -55,43 +94,26 @@ public class TokenUtil {
         
         try {
             // Verificar en cache primero
-            TokenData cached = tokenCache.get(token);
+            long now = System.currentTimeMillis();
+            TokenCache.Entry cached = tokenCache.get(token, now);
             if (cached != null) {
-                if (System.currentTimeMillis() < cached.expiration) {
-                    return cached.userId;
-                } else {
-                    tokenCache.remove(token);
-                    return null;
-                }
+                return cached.getUserId();
             }
             
-            String decoded = new String(Base64.getDecoder().decode(token), StandardCharsets.UTF_8);
-            String[] parts = decoded.split(":");
-            
-            if (parts.length != 4) {
-                return null;
-            }
-            
-            Long userId = Long.parseLong(parts[0]);
-            String username = parts[1];
-            long expiration = Long.parseLong(parts[2]);
-            String signature = parts[3];
-            
-            if (System.currentTimeMillis() > expiration) {
-                return null;
-            }
-            
-            String payload = userId + ":" + username + ":" + expiration;
-            String expectedSignature = createSignature(payload);
-            
-            if (!signature.equals(expectedSignature)) {
-                return null;
+            Verifier verifier = verifiers.acquire();
+            try {
+                if (!verifier.verify(token, now)) {
+                    return null;
+                }
+                
+                Long userId = verifier.userId;
+                tokenCache.put(token, userId, verifier.username(), verifier.expiration, now);
+                
+                return userId;
+            } finally {
+                verifiers.release(verifier);
             }
             
-            tokenCache.put(token, new TokenData(userId, username, expiration));
-            
-            return userId;
-            
         } catch (Exception e) {
             System.err.println("Error al validar token: " + e.getMessage());
             return null;
@@ -103,9 +125,9 @@ public class TokenUtil {
      */
     public static String extractUsername(String token) {
         try {
-            TokenData cached = tokenCache.get(token);
+            TokenCache.Entry cached = tokenCache.get(token, System.currentTimeMillis());
             if (cached != null) {
-                return cached.username;
+                return cached.getUsername();
             }
             
             String decoded = new String(Base64.getDecoder().decode(token), StandardCharsets.UTF_8);
@@ -121,25 +143,303 @@ public class TokenUtil {
     }
     
     /**
-     * Crea una firma para el payload
+     * verificadores libres en un array fijo de huecos: acquire toma el primero que encuentra
+     * empezando por el hueco del hilo y release lo devuelve al primero vacío, sin crear objetos.
+     * si todos están ocupados se crea uno nuevo, que se descarta al devolverlo si no cabe
      */
-    private static String createSignature(String payload) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(SECRET_KEY.getBytes(StandardCharsets.UTF_8));
-            byte[] hash = md.digest(payload.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash).substring(0, 32);
-        } catch (Exception e) {
-            throw new RuntimeException("Error al crear firma: " + e.getMessage());
+    private static final class VerifierPool {
+        private final AtomicReferenceArray<Verifier> slots;
+        private final AtomicLong created = new AtomicLong();
+        
+        private VerifierPool(int size) {
+            slots = new AtomicReferenceArray<>(size);
+        }
+        
+        private Verifier acquire() {
+            int start = (int) Math.floorMod(Thread.currentThread().getId(), (long) slots.length());
+            for (int i = 0; i < slots.length(); i++) {
+                Verifier verifier = slots.getAndSet((start + i) % slots.length(), null);
+                if (verifier != null) {
+                    return verifier;
+                }
+            }
+            created.incrementAndGet();
+            return new Verifier();
+        }
+        
+        private void release(Verifier verifier) {
+            int start = (int) Math.floorMod(Thread.currentThread().getId(), (long) slots.length());
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.compareAndSet((start + i) % slots.length(), null, verifier)) {
+                    return;
+                }
+            }
         }
     }
     
     /**
-     * limpia tokens expirados del cache
+     * estado de una verificación: la instancia de HMAC y los buffers donde se decodifica el
+     * token, que se reutilizan entre llamadas para no crear objetos al verificar
+     */
+    private static final class Verifier {
+        private final Mac mac;
+        private final MessageDigest legacyDigest;
+        private final byte[] secret = SECRET_KEY.getBytes(StandardCharsets.UTF_8);
+        private final byte[] encoded = new byte[MAX_TOKEN_LENGTH];
+        private final byte[] decoded = new byte[MAX_TOKEN_LENGTH / 4 * 3];
+        private final byte[] signature = new byte[SIGNATURE_BYTES];
+        private final byte[] expected;
+        
+        private long userId;
+        private long expiration;
+        private int usernameStart;
+        private int usernameEnd;
+        
+        private Verifier() {
+            try {
+                mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+                legacyDigest = MessageDigest.getInstance("SHA-256");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC no disponible: " + e.getMessage(), e);
+            }
+            expected = new byte[Math.max(mac.getMacLength(), legacyDigest.getDigestLength())];
+        }
+        
+        private byte[] sign(byte[] data, int offset, int length) {
+            mac.update(data, offset, length);
+            return mac.doFinal();
+        }
+        
+        /**
+         * decodifica el token en los buffers del hilo, separa los campos sobre los bytes y
+         * comprueba expiración y firma; si es válido deja userId, expiration y la posición del
+         * username en el verificador
+         */
+        private boolean verify(String token, long now) throws GeneralSecurityException {
+            int length = token.length();
+            if (length > encoded.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = token.charAt(i);
+                if (c >= 128) {
+                    return false;
+                }
+                encoded[i] = (byte) c;
+            }
+            int size = decodeBase64(encoded, 0, length, decoded);
+            if (size < 0) {
+                return false;
+            }
+            
+            // userId:username:expiration:firma, exactamente cuatro campos
+            int first = indexOf(decoded, (byte) ':', 0, size);
+            int second = indexOf(decoded, (byte) ':', first + 1, size);
+            int third = indexOf(decoded, (byte) ':', second + 1, size);
+            if (first <= 0 || second < 0 || third < 0 || indexOf(decoded, (byte) ':', third + 1, size) >= 0) {
+                return false;
+            }
+            long parsedUserId = parseLong(decoded, 0, first);
+            long parsedExpiration = parseLong(decoded, second + 1, third);
+            if (parsedUserId < 0 || parsedExpiration < 0 || now > parsedExpiration) {
+                return false;
+            }
+            if (decodeBase64(decoded, third + 1, size, signature) != SIGNATURE_BYTES) {
+                return false;
+            }
+            
+            mac.update(decoded, 0, third);
+            mac.doFinal(expected, 0);
+            if (!signatureMatches()) {
+                if (now >= LEGACY_SIGNATURE_UNTIL) {
+                    return false;
+                }
+                legacyDigest.update(secret);
+                legacyDigest.update(decoded, 0, third);
+                legacyDigest.digest(expected, 0, expected.length);
+                if (!signatureMatches()) {
+                    return false;
+                }
+            }
+            
+            userId = parsedUserId;
+            expiration = parsedExpiration;
+            usernameStart = first + 1;
+            usernameEnd = second;
+            return true;
+        }
+        
+        // comparación en tiempo constante: recorre siempre toda la firma
+        private boolean signatureMatches() {
+            int difference = 0;
+            for (int i = 0; i < SIGNATURE_BYTES; i++) {
+                difference |= signature[i] ^ expected[i];
+            }
+            return difference == 0;
+        }
+        
+        private String username() {
+            return new String(decoded, usernameStart, usernameEnd - usernameStart, StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * decodifica base64 estándar (con o sin relleno) de src[from, to) en dst; -1 si no es base64 válido o no cabe
+     */
+    private static int decodeBase64(byte[] src, int from, int to, byte[] dst) {
+        while (to > from && src[to - 1] == '=') {
+            to--;
+        }
+        if ((to - from) % 4 == 1) {
+            return -1;
+        }
+        int size = 0;
+        int bits = 0;
+        int pending = 0;
+        for (int i = from; i < to; i++) {
+            int value = src[i] >= 0 ? BASE64_VALUES[src[i]] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            pending += 6;
+            if (pending >= 8) {
+                pending -= 8;
+                if (size == dst.length) {
+                    return -1;
+                }
+                dst[size++] = (byte) (bits >> pending);
+            }
+        }
+        return size;
+    }
+    
+    private static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * entero decimal no negativo en bytes[from, to); -1 si está vacío, no es numérico o se desborda
+     */
+    private static long parseLong(byte[] bytes, int from, int to) {
+        if (from >= to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    private static int[] base64Values() {
+        int[] values = new int[128];
+        Arrays.fill(values, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            values[alphabet.charAt(i)] = i;
+        }
+        return values;
+    }
+    
+    /**
+     * limpia tokens expirados del cache (la rueda también avanza sola con cada token que se guarda o se consulta)
      */
     public static void cleanExpiredTokens() {
+        tokenCache.expire(System.currentTimeMillis());
+    }
+    
+    /**
+     * tamaño y tasa de aciertos del caché de tokens
+     */
+    public static Map<String, Object> getCacheStats() {
+        return tokenCache.stats();
+    }
+    
+    /**
+     * mide la verificación por firma (sin pasar por el caché) sobre un token recién generado:
+     * nanosegundos y bytes asignados por verificación en un mismo hilo tras un calentamiento, y
+     * bytes por verificación cuando cada una corre en un hilo nuevo, como con --virtual-threads
+     * (el contador de asignación solo existe para hilos de plataforma, así que se usan esos)
+     */
+    public static Map<String, Object> benchmarkVerification(int iterations) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
         long now = System.currentTimeMillis();
-        tokenCache.entrySet().removeIf(entry -> entry.getValue().expiration < now);
+        String token = generateToken(1L, "benchmark");
+        Verifier verifier = verifiers.acquire();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                verifier.verify(token, now);
+            }
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            int valid = 0;
+            for (int i = 0; i < iterations; i++) {
+                if (verifier.verify(token, now)) {
+                    valid++;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("iterations", iterations);
+            result.put("valid", valid);
+            result.put("nanosPerVerification", elapsed / iterations);
+            result.put("bytesPerVerification", Math.round(allocated * 100.0 / iterations) / 100.0);
+            result.putAll(benchmarkNewThreads(threads, token, now, 1000));
+            return result;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error al verificar token: " + e.getMessage(), e);
+        } finally {
+            verifiers.release(verifier);
+        }
+    }
+    
+    private static Map<String, Object> benchmarkNewThreads(com.sun.management.ThreadMXBean threads, String token,
+                                                           long now, int count) {
+        AtomicLong allocated = new AtomicLong();
+        AtomicLong valid = new AtomicLong();
+        long createdBefore = verifiers.created.get();
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread(() -> {
+                long before = threads.getCurrentThreadAllocatedBytes();
+                Verifier verifier = verifiers.acquire();
+                try {
+                    if (verifier.verify(token, now)) {
+                        valid.incrementAndGet();
+                    }
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("Error al verificar token: " + e.getMessage(), e);
+                } finally {
+                    verifiers.release(verifier);
+                }
+                allocated.addAndGet(threads.getCurrentThreadAllocatedBytes() - before);
+            });
+            thread.start();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrumpido midiendo la verificación", e);
+            }
+        }
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("newThreads", count);
+        result.put("newThreadsValid", valid.get());
+        result.put("bytesPerVerificationNewThread", Math.round(allocated.get() * 100.0 / count) / 100.0);
+        result.put("verifiersCreated", verifiers.created.get() - createdBefore);
+        return result;
     }
 }
-